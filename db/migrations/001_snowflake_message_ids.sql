@@ -0,0 +1,18 @@
+-- Message ids become application-assigned 64-bit Snowflake ids (see SnowflakeId).
+-- Run once against an existing database before deploying; new databases get this schema
+-- from hbm2ddl. Existing ids are small and stay below every newly generated id, so
+-- ordering by id is preserved.
+BEGIN;
+
+ALTER TABLE messages ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE messages ALTER COLUMN id DROP DEFAULT;
+DROP SEQUENCE IF EXISTS messages_id_seq;
+
+ALTER TABLE messages ALTER COLUMN id TYPE bigint;
+ALTER TABLE messages ALTER COLUMN reply_to_id TYPE bigint;
+ALTER TABLE message_status ALTER COLUMN message_id TYPE bigint;
+ALTER TABLE reactions ALTER COLUMN message_id TYPE bigint;
+
+CREATE INDEX IF NOT EXISTS idx_messages_room_id ON messages (room_id, id);
+
+COMMIT;
@@ -0,0 +1,78 @@
+package com.tuganire.build;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Build-time asset stage, run by Maven (exec plugin, prepare-package) as a single-file program:
+ * {@code AssetPipeline <webapp dir> <output dir> <asset>...}.
+ *
+ * <p>Each asset (e.g. {@code css/style.css}) is copied to {@code assets/css/style.<hash>.css},
+ * named by its content hash, next to {@code .gz} and {@code .br} variants compressed at the
+ * highest level. {@code WEB-INF/assets.properties} maps each source path to its fingerprinted
+ * path; StaticAssetFilter and the JSPs read it at runtime. The output directory is added to
+ * the WAR as a web resource.
+ */
+public final class AssetPipeline {
+
+    private AssetPipeline() {
+    }
+
+    public static void main(String[] args) throws IOException, NoSuchAlgorithmException {
+        Path webapp = Path.of(args[0]);
+        Path out = Path.of(args[1]);
+        boolean brotli = Brotli4jLoader.isAvailable();
+        if (!brotli) {
+            System.err.println("[assets] Brotli unavailable on this platform, skipping .br: "
+                    + Brotli4jLoader.getUnavailabilityCause());
+        }
+        Properties manifest = new Properties();
+        for (int i = 2; i < args.length; i++) {
+            String source = args[i];
+            byte[] content = Files.readAllBytes(webapp.resolve(source));
+            String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content), 0, 5);
+            int dot = source.lastIndexOf('.');
+            String target = "assets/" + source.substring(0, dot) + "." + hash + source.substring(dot);
+
+            Path file = out.resolve(target);
+            Files.createDirectories(file.getParent());
+            Files.write(file, content);
+            Files.write(Path.of(file + ".gz"), gzip(content));
+            if (brotli) {
+                Files.write(Path.of(file + ".br"), Encoder.compress(content,
+                        new Encoder.Parameters().setQuality(11).setMode(Encoder.Mode.TEXT)));
+            }
+            manifest.setProperty(source, target);
+            System.out.println("[assets] " + source + " -> " + target);
+        }
+        Path manifestFile = out.resolve("WEB-INF/assets.properties");
+        Files.createDirectories(manifestFile.getParent());
+        try (OutputStream os = Files.newOutputStream(manifestFile)) {
+            manifest.store(os, "Generated by AssetPipeline: source path -> fingerprinted path");
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(content.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(buf) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gz.write(content);
+        }
+        return buf.toByteArray();
+    }
+}
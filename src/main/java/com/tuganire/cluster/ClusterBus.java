@@ -0,0 +1,47 @@
+package com.tuganire.cluster;
+
+import com.tuganire.util.EnvConfig;
+
+/**
+ * Pluggable publish/subscribe transport between application nodes.
+ * Each node subscribes only to the channels it has local interest in (e.g. rooms with
+ * connected members) and delivers received events to its own sessions.
+ *
+ * <p>Implementations: {@link LocalClusterBus} (loopback within one node) and
+ * {@link PostgresClusterBus} (LISTEN/NOTIFY on the application database). Select with CLUSTER_BUS.
+ */
+public interface ClusterBus {
+
+    @FunctionalInterface
+    interface Listener {
+        void onEvent(String channel, String payload);
+    }
+
+    /**
+     * Start delivering events for subscribed channels to the listener.
+     */
+    void start(Listener listener);
+
+    /**
+     * Publish to every node subscribed to the channel, including this one.
+     */
+    void publish(String channel, String payload);
+
+    void subscribe(String channel);
+
+    void unsubscribe(String channel);
+
+    void close();
+
+    static ClusterBus fromConfig() {
+        String type = EnvConfig.get("CLUSTER_BUS", "local").toLowerCase();
+        return switch (type) {
+            case "local" -> new LocalClusterBus();
+            case "postgres" -> new PostgresClusterBus(
+                    EnvConfig.getRequired("DB_URL"),
+                    EnvConfig.getRequired("DB_USERNAME"),
+                    EnvConfig.getRequired("DB_PASSWORD"));
+            default -> throw new IllegalStateException("Unknown CLUSTER_BUS: " + type);
+        };
+    }
+}
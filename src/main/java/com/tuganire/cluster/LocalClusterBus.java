@@ -0,0 +1,45 @@
+package com.tuganire.cluster;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-node bus: events published on a channel this instance subscribes to are delivered
+ * straight back to its own listener. It never connects separate instances; ClusterFanout is one
+ * per JVM, so a JVM is always exactly one node. Multi-node behaviour needs PostgresClusterBus.
+ */
+public final class LocalClusterBus implements ClusterBus {
+
+    private final Set<String> channels = ConcurrentHashMap.newKeySet();
+
+    private volatile Listener listener;
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void publish(String channel, String payload) {
+        Listener l = listener;
+        if (l != null && channels.contains(channel)) {
+            l.onEvent(channel, payload);
+        }
+    }
+
+    @Override
+    public void subscribe(String channel) {
+        channels.add(channel);
+    }
+
+    @Override
+    public void unsubscribe(String channel) {
+        channels.remove(channel);
+    }
+
+    @Override
+    public void close() {
+        listener = null;
+        channels.clear();
+    }
+}
@@ -0,0 +1,290 @@
+package com.tuganire.cluster;
+
+import com.tuganire.util.Metrics;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cluster bus over PostgreSQL LISTEN/NOTIFY. Uses two dedicated connections outside the
+ * Hikari pool: one that LISTENs and polls notifications, one that publishes queued events
+ * in batches through a single {@code pg_notify} over {@code unnest}.
+ *
+ * <p>PostgreSQL delivers identical channel+payload pairs sent in one transaction only once, and
+ * a batch is one transaction. So every notification is prefixed with this publisher's sequence
+ * number ({@code <seq> <payload>}), which the receiver strips.
+ *
+ * <p>NOTIFY payloads are limited to 8000 bytes, so larger events are split into chunks
+ * and reassembled by the receiver. Requires a direct (session-mode) connection; LISTEN
+ * does not work through a transaction-pooling proxy.
+ */
+public final class PostgresClusterBus implements ClusterBus {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PostgresClusterBus.class);
+
+    private static final int MAX_PAYLOAD_BYTES = 7900; // of 8000, leaving room for the sequence prefix
+    /** Chars per chunk: at most 3 UTF-8 bytes per char keeps a chunk plus header under the limit. */
+    private static final int CHUNK_CHARS = 2500;
+    private static final char CHUNK_MARK = '~';
+    private static final long CHUNK_TTL_MS = 30_000;
+    private static final int PUBLISH_BATCH = 256;
+
+    private static final LongAdder PUBLISHED = Metrics.counter("cluster.pg.published");
+    private static final LongAdder RECEIVED = Metrics.counter("cluster.pg.received");
+    private static final LongAdder DROPPED = Metrics.counter("cluster.pg.dropped");
+    private static final LongAdder RECONNECTS = Metrics.counter("cluster.pg.reconnects");
+
+    private final String url;
+    private final String username;
+    private final String password;
+
+    private final Set<String> channels = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<String> listenCommands = new ConcurrentLinkedQueue<>();
+    private final BlockingQueue<String[]> outbound = new LinkedBlockingQueue<>(10_000);
+    private final Map<String, Chunks> partial = new ConcurrentHashMap<>();
+    private final AtomicLong chunkSeq = new AtomicLong();
+    // Only touched by the publish thread
+    private long publishSeq;
+    private final String chunkPrefix = Long.toHexString(System.nanoTime());
+
+    private volatile boolean running;
+    private volatile Listener listener;
+
+    private static final class Chunks {
+        final String[] parts;
+        final long createdAt = System.currentTimeMillis();
+        int received;
+
+        Chunks(int count) {
+            parts = new String[count];
+        }
+    }
+
+    public PostgresClusterBus(String url, String username, String password) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        Metrics.gauge("cluster.pg.outboundQueued", outbound::size);
+        Metrics.gauge("cluster.pg.channels", channels::size);
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        running = true;
+        daemon("tuganire-bus-listen", this::listenLoop).start();
+        daemon("tuganire-bus-publish", this::publishLoop).start();
+    }
+
+    @Override
+    public void publish(String channel, String payload) {
+        if (payload.length() * 3 <= MAX_PAYLOAD_BYTES
+                || payload.getBytes(StandardCharsets.UTF_8).length <= MAX_PAYLOAD_BYTES) {
+            enqueue(channel, payload);
+            return;
+        }
+        String key = chunkPrefix + "." + chunkSeq.incrementAndGet();
+        List<String> parts = split(payload);
+        for (int i = 0; i < parts.size(); i++) {
+            enqueue(channel, CHUNK_MARK + key + "/" + i + "/" + parts.size() + "|" + parts.get(i));
+        }
+    }
+
+    @Override
+    public void subscribe(String channel) {
+        if (channels.add(channel)) {
+            listenCommands.add("LISTEN " + quote(channel));
+        }
+    }
+
+    @Override
+    public void unsubscribe(String channel) {
+        if (channels.remove(channel)) {
+            listenCommands.add("UNLISTEN " + quote(channel));
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+    }
+
+    private void enqueue(String channel, String payload) {
+        if (!outbound.offer(new String[]{channel, payload})) {
+            DROPPED.increment();
+        }
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection conn = DriverManager.getConnection(url, username, password);
+                 Statement st = conn.createStatement()) {
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                listenCommands.clear();
+                for (String channel : channels) {
+                    st.execute("LISTEN " + quote(channel));
+                }
+                while (running) {
+                    String cmd;
+                    while ((cmd = listenCommands.poll()) != null) {
+                        st.execute(cmd);
+                    }
+                    PGNotification[] notes = pg.getNotifications(250);
+                    if (notes != null) {
+                        for (PGNotification n : notes) {
+                            receive(n.getName(), n.getParameter());
+                        }
+                    }
+                    purgeStaleChunks();
+                }
+            } catch (SQLException e) {
+                RECONNECTS.increment();
+                LOG.warn("Cluster bus listener lost its connection; reconnecting", e);
+                sleepQuietly(1000);
+            }
+        }
+    }
+
+    private void publishLoop() {
+        List<String[]> batch = new ArrayList<>(PUBLISH_BATCH);
+        while (running) {
+            try (Connection conn = DriverManager.getConnection(url, username, password);
+                 PreparedStatement ps = conn.prepareStatement(
+                         "SELECT pg_notify(c, p) FROM unnest(?::text[], ?::text[]) AS t(c, p)")) {
+                while (running) {
+                    if (batch.isEmpty()) {
+                        String[] first = outbound.poll(250, TimeUnit.MILLISECONDS);
+                        if (first == null) continue;
+                        batch.add(first);
+                        outbound.drainTo(batch, PUBLISH_BATCH - 1);
+                    }
+                    String[] chans = new String[batch.size()];
+                    String[] payloads = new String[batch.size()];
+                    for (int i = 0; i < batch.size(); i++) {
+                        chans[i] = batch.get(i)[0];
+                        payloads[i] = Long.toString(++publishSeq, 36) + ' ' + batch.get(i)[1];
+                    }
+                    Array c = conn.createArrayOf("text", chans);
+                    Array p = conn.createArrayOf("text", payloads);
+                    ps.setArray(1, c);
+                    ps.setArray(2, p);
+                    ps.executeQuery().close();
+                    PUBLISHED.add(batch.size());
+                    batch.clear();
+                }
+            } catch (SQLException e) {
+                RECONNECTS.increment();
+                LOG.warn("Cluster bus publisher lost its connection; reconnecting", e);
+                sleepQuietly(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void receive(String channel, String notification) {
+        RECEIVED.increment();
+        String payload = notification.substring(notification.indexOf(' ') + 1);
+        if (!payload.isEmpty() && payload.charAt(0) == CHUNK_MARK) {
+            payload = reassemble(payload);
+            if (payload == null) {
+                return;
+            }
+        }
+        Listener l = listener;
+        if (l != null && channels.contains(channel)) {
+            try {
+                l.onEvent(channel, payload);
+            } catch (RuntimeException e) {
+                LOG.warn("Cluster event handler failed on {}", channel, e);
+            }
+        }
+    }
+
+    /**
+     * Store one chunk; returns the full payload once every chunk has arrived.
+     */
+    private String reassemble(String chunk) {
+        int bar = chunk.indexOf('|');
+        String[] head = chunk.substring(1, bar).split("/");
+        int index = Integer.parseInt(head[1]);
+        int count = Integer.parseInt(head[2]);
+        Chunks c = partial.computeIfAbsent(head[0], k -> new Chunks(count));
+        if (c.parts[index] == null) {
+            c.parts[index] = chunk.substring(bar + 1);
+            c.received++;
+        }
+        if (c.received < count) {
+            return null;
+        }
+        partial.remove(head[0]);
+        return String.join("", c.parts);
+    }
+
+    private void purgeStaleChunks() {
+        if (partial.isEmpty()) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - CHUNK_TTL_MS;
+        for (Iterator<Chunks> it = partial.values().iterator(); it.hasNext(); ) {
+            if (it.next().createdAt < cutoff) {
+                it.remove();
+                DROPPED.increment();
+            }
+        }
+    }
+
+    private static List<String> split(String s) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        while (start < s.length()) {
+            int end = Math.min(start + CHUNK_CHARS, s.length());
+            if (end < s.length() && Character.isHighSurrogate(s.charAt(end - 1))) {
+                end--; // never split a surrogate pair
+            }
+            parts.add(s.substring(start, end));
+            start = end;
+        }
+        return parts;
+    }
+
+    private static String quote(String channel) {
+        return '"' + channel.replace("\"", "\"\"") + '"';
+    }
+
+    private static Thread daemon(String name, Runnable r) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
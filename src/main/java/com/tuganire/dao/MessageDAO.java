@@ -4,12 +4,24 @@ import com.tuganire.model.*;
 import com.tuganire.util.HibernateUtil;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.query.Query;
 
-import java.time.Instant;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Collections;
 
 /**
  * Hibernate-based DAO for Message, MessageStatus, Reaction.
@@ -18,7 +30,7 @@ public class MessageDAO {
 
     private final SessionFactory sessionFactory = HibernateUtil.getSessionFactory();
 
-    public Optional<Message> findById(int id) {
+    public Optional<Message> findById(long id) {
         try (Session session = sessionFactory.openSession()) {
             Message msg = session.get(Message.class, id);
             return Optional.ofNullable(msg);
@@ -26,64 +38,201 @@ public class MessageDAO {
     }
 
     /**
-     * Paginated message history for a room, newest first.
+     * Up to limit messages of a room older than beforeId (newest first), or, if afterId is given,
+     * newer than afterId (oldest first). Keyset pagination on (room_id, id): every page costs
+     * one index range scan, however far back it is.
+     *
+     * <p>One SQL statement returns flat rows with the sender's username and a per-emoji reaction
+     * summary, read through a stateless session: no entities, no lazy loading, no N+1.
      */
-    public List<Message> findByRoomId(int roomId, int limit, int offset) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<Message> q = session.createQuery(
-                    "FROM Message m WHERE m.room.id = :roomId ORDER BY m.createdAt DESC",
-                    Message.class);
-            q.setParameter("roomId", roomId);
-            q.setMaxResults(limit);
-            q.setFirstResult(offset);
-            List<Message> list = q.list();
-            // Return in chronological order (oldest first) for display
-            Collections.reverse(list);
-            return list;
+    public List<MessageView> findHistory(int roomId, int limit, Long beforeId, Long afterId) {
+        String sql = "SELECT m.id, m.room_id, m.sender_id, u.username, m.content, m.media_url, m.reply_to_id, " +
+                "m.created_at, r.emojis, r.counts " +
+                "FROM messages m JOIN users u ON u.id = m.sender_id " +
+                "LEFT JOIN LATERAL (SELECT array_agg(g.emoji ORDER BY g.first_id) AS emojis, " +
+                "array_agg(g.n ORDER BY g.first_id) AS counts FROM (SELECT emoji, COUNT(*) AS n, MIN(id) AS first_id " +
+                "FROM reactions WHERE message_id = m.id GROUP BY emoji) g) r ON true " +
+                "WHERE m.room_id = ? " +
+                (afterId != null ? "AND m.id > ? ORDER BY m.id ASC " :
+                        beforeId != null ? "AND m.id < ? ORDER BY m.id DESC " : "ORDER BY m.id DESC ") +
+                "LIMIT ?";
+        List<MessageView> views = new ArrayList<>(limit);
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            session.doWork(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    int i = 1;
+                    ps.setInt(i++, roomId);
+                    if (afterId != null || beforeId != null) {
+                        ps.setLong(i++, afterId != null ? afterId : beforeId);
+                    }
+                    ps.setInt(i, limit);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            views.add(toView(rs));
+                        }
+                    }
+                }
+            });
+        }
+        return views;
+    }
+
+    private static MessageView toView(ResultSet rs) throws SQLException {
+        long replyTo = rs.getLong(7);
+        Long replyToId = rs.wasNull() ? null : replyTo;
+        Map<String, Integer> reactions = Collections.emptyMap();
+        Array emojis = rs.getArray(9);
+        if (emojis != null) {
+            String[] e = (String[]) emojis.getArray();
+            Long[] n = (Long[]) rs.getArray(10).getArray();
+            reactions = new LinkedHashMap<>();
+            for (int i = 0; i < e.length; i++) {
+                reactions.put(e[i], n[i].intValue());
+            }
         }
+        return new MessageView(rs.getLong(1), rs.getInt(2), rs.getInt(3), rs.getString(4), rs.getString(5),
+                rs.getString(6), replyToId, rs.getObject(8, OffsetDateTime.class).toInstant(), reactions);
+    }
+
+    /** Receives one (room, member, unread count) row. */
+    public interface UnreadCountSink {
+        void accept(int roomId, int userId, int count);
     }
 
-    public Message save(Message message) {
+    /**
+     * Stream the non-zero unread counts of every membership (or of one, if both ids are given):
+     * messages from others newer than room_members.last_read_at, or all of them if never read.
+     */
+    public void loadUnreadCounts(Integer roomId, Integer userId, UnreadCountSink sink) {
+        String sql = "SELECT rm.room_id, rm.user_id, COUNT(*) FROM room_members rm " +
+                "JOIN messages m ON m.room_id = rm.room_id AND m.sender_id <> rm.user_id " +
+                "AND (rm.last_read_at IS NULL OR m.created_at > rm.last_read_at) " +
+                (roomId != null ? "WHERE rm.room_id = ? AND rm.user_id = ? " : "") +
+                "GROUP BY rm.room_id, rm.user_id";
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            session.doWork(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    if (roomId != null) {
+                        ps.setInt(1, roomId);
+                        ps.setInt(2, userId);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            sink.accept(rs.getInt(1), rs.getInt(2), (int) Math.min(rs.getLong(3), Integer.MAX_VALUE));
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Insert new messages in one transaction with a single JDBC batch. A row is only inserted if
+     * the sender is a member of the room, and reply_to_id is only kept if the target is in the
+     * same room, so no lookups are needed beforehand. Returns, per message, the row as stored
+     * (its reply id may have been dropped), or null if it was not inserted.
+     */
+    public NewMessage[] insertBatch(List<NewMessage> messages) {
+        NewMessage[] stored = new NewMessage[messages.size()];
         try (Session session = sessionFactory.openSession()) {
             session.beginTransaction();
-            session.persist(message);
+            session.doWork(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO messages (id, room_id, sender_id, content, reply_to_id, created_at) " +
+                                "SELECT ?, rm.room_id, rm.user_id, ?, " +
+                                "(SELECT r.id FROM messages r WHERE r.id = ? AND r.room_id = rm.room_id), ? " +
+                                "FROM room_members rm WHERE rm.room_id = ? AND rm.user_id = ?",
+                        new String[]{"id", "reply_to_id"})) {
+                    Map<Long, Integer> index = new HashMap<>();
+                    for (int i = 0; i < messages.size(); i++) {
+                        NewMessage m = messages.get(i);
+                        index.put(m.id(), i);
+                        ps.setLong(1, m.id());
+                        ps.setString(2, m.content());
+                        ps.setObject(4, m.createdAt().atOffset(ZoneOffset.UTC));
+                        ps.setInt(5, m.roomId());
+                        ps.setInt(6, m.senderId());
+                        if (m.replyToId() != null) {
+                            ps.setLong(3, m.replyToId());
+                        } else {
+                            ps.setNull(3, Types.BIGINT);
+                        }
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    // RETURNING rows come back only for inserted messages, in no promised order
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        while (keys.next()) {
+                            int i = index.get(keys.getLong(1));
+                            long replyTo = keys.getLong(2);
+                            NewMessage m = messages.get(i);
+                            stored[i] = keys.wasNull() == (m.replyToId() == null) ? m
+                                    : new NewMessage(m.id(), m.roomId(), m.senderId(), m.content(), null, m.createdAt());
+                        }
+                    }
+                }
+            });
             session.getTransaction().commit();
-            return message;
         }
+        return stored;
     }
 
     /**
-     * Mark message as READ for a user.
+     * Apply read watermarks in one transaction: upsert READ status for each watermark message
+     * and advance room_members.last_read_at. Rows whose message is not in the room, or whose
+     * user is not a member, are skipped. Returns the watermarks that were applied.
      */
-    public void markAsRead(int messageId, int userId) {
+    public List<ReadWatermark> applyReadWatermarks(List<ReadWatermark> watermarks) {
+        List<ReadWatermark> applied = new ArrayList<>(watermarks.size());
         try (Session session = sessionFactory.openSession()) {
             session.beginTransaction();
-            Message msg = session.get(Message.class, messageId);
-            User user = session.get(User.class, userId);
-            if (msg != null && user != null) {
-                Query<MessageStatus> q = session.createQuery(
-                        "FROM MessageStatus ms WHERE ms.message.id = :msgId AND ms.user.id = :uId",
-                        MessageStatus.class);
-                q.setParameter("msgId", messageId);
-                q.setParameter("uId", userId);
-                MessageStatus ms = q.uniqueResult();
-                if (ms != null) {
-                    ms.setStatus(MessageStatusType.READ);
-                    ms.setUpdatedAt(Instant.now());
-                    session.merge(ms);
-                } else {
-                    MessageStatus newMs = new MessageStatus(msg, user, MessageStatusType.READ);
-                    session.persist(newMs);
+            session.doWork(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO message_status (message_id, user_id, status, updated_at) " +
+                                "SELECT m.id, rm.user_id, 'READ', ? FROM messages m " +
+                                "JOIN room_members rm ON rm.room_id = m.room_id AND rm.user_id = ? " +
+                                "WHERE m.id = ? AND m.room_id = ? " +
+                                "ON CONFLICT (message_id, user_id) DO UPDATE SET status = 'READ', updated_at = EXCLUDED.updated_at")) {
+                    for (ReadWatermark w : watermarks) {
+                        ps.setObject(1, w.readAt().atOffset(ZoneOffset.UTC));
+                        ps.setInt(2, w.userId());
+                        ps.setLong(3, w.messageId());
+                        ps.setInt(4, w.roomId());
+                        ps.addBatch();
+                    }
+                    int[] counts = ps.executeBatch();
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                            applied.add(watermarks.get(i));
+                        }
+                    }
                 }
-            }
+                if (applied.isEmpty()) {
+                    return;
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE room_members SET last_read_at = GREATEST(COALESCE(last_read_at, ?), ?) " +
+                                "WHERE room_id = ? AND user_id = ?")) {
+                    for (ReadWatermark w : applied) {
+                        OffsetDateTime at = w.readAt().atOffset(ZoneOffset.UTC);
+                        ps.setObject(1, at);
+                        ps.setObject(2, at);
+                        ps.setInt(3, w.roomId());
+                        ps.setInt(4, w.userId());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            });
             session.getTransaction().commit();
         }
+        return applied;
     }
 
     /**
      * Add or update reaction. One reaction per user per message.
      */
-    public Reaction addOrUpdateReaction(int messageId, int userId, String emoji) {
+    public Reaction addOrUpdateReaction(long messageId, int userId, String emoji) {
         try (Session session = sessionFactory.openSession()) {
             session.beginTransaction();
             Message msg = session.get(Message.class, messageId);
@@ -110,38 +259,4 @@ public class MessageDAO {
             return newR;
         }
     }
-
-    /**
-     * Get latest message in a room for preview.
-     */
-    public Optional<Message> getLastMessage(int roomId) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<Message> q = session.createQuery(
-                    "FROM Message m WHERE m.room.id = :roomId ORDER BY m.createdAt DESC",
-                    Message.class);
-            q.setParameter("roomId", roomId);
-            q.setMaxResults(1);
-            return q.uniqueResultOptional();
-        }
-    }
-
-    /**
-     * Count unread messages in a room for a user (messages after lastReadAt).
-     */
-    public long countUnread(int roomId, int userId, Instant lastReadAt) {
-        try (Session session = sessionFactory.openSession()) {
-            String hql = "SELECT COUNT(m) FROM Message m WHERE m.room.id = :roomId AND m.sender.id != :userId";
-            if (lastReadAt != null) {
-                hql += " AND m.createdAt > :lastRead";
-            }
-            Query<Long> q = session.createQuery(hql, Long.class);
-            q.setParameter("roomId", roomId);
-            q.setParameter("userId", userId);
-            if (lastReadAt != null) {
-                q.setParameter("lastRead", lastReadAt);
-            }
-            Long count = q.uniqueResult();
-            return count != null ? count : 0;
-        }
-    }
 }
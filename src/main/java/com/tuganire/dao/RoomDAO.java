@@ -1,5 +1,6 @@
 package com.tuganire.dao;
 
+import com.tuganire.model.InboxEntry;
 import com.tuganire.model.Room;
 import com.tuganire.model.RoomMember;
 import com.tuganire.model.RoomType;
@@ -7,8 +8,15 @@ import com.tuganire.model.User;
 import com.tuganire.util.HibernateUtil;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.query.Query;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,18 +35,72 @@ public class RoomDAO {
     }
 
     /**
-     * Rooms where the user is a member, ordered by last activity (simplified: by room id for now).
+     * The user's rooms with last message, most recently active first, in one statement.
+     * Activity is the latest message time, or the join time for an empty room.
+     * Keyset-paginated on (activity, room id): pass the last row's values to get the next page.
+     * Unread counts are left at 0 for the caller to fill in from UnreadCounters.
      */
-    public List<Room> findRoomsByUserId(int userId) {
+    public List<InboxEntry> findInbox(int userId, int limit, Instant afterActivity, Integer afterRoomId) {
+        String sql = "SELECT x.id, x.name, x.type, x.last_id, x.last_content, x.activity " +
+                "FROM (SELECT r.id, r.name, r.type, lm.id AS last_id, lm.content AS last_content, " +
+                "COALESCE(lm.created_at, rm.joined_at) AS activity " +
+                "FROM room_members rm JOIN rooms r ON r.id = rm.room_id " +
+                "LEFT JOIN LATERAL (SELECT m.id, m.content, m.created_at FROM messages m " +
+                "WHERE m.room_id = rm.room_id ORDER BY m.id DESC LIMIT 1) lm ON true " +
+                "WHERE rm.user_id = ?) x " +
+                (afterActivity != null ? "WHERE (x.activity, x.id) < (?, ?) " : "") +
+                "ORDER BY x.activity DESC, x.id DESC LIMIT ?";
+        List<InboxEntry> rooms = new ArrayList<>(limit);
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            session.doWork(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    int i = 1;
+                    ps.setInt(i++, userId);
+                    if (afterActivity != null) {
+                        ps.setObject(i++, afterActivity.atOffset(ZoneOffset.UTC));
+                        ps.setInt(i++, afterRoomId);
+                    }
+                    ps.setInt(i, limit);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            long lastId = rs.getLong(4);
+                            rooms.add(new InboxEntry(rs.getInt(1), rs.getString(2), RoomType.valueOf(rs.getString(3)),
+                                    rs.wasNull() ? null : lastId, rs.getString(5),
+                                    rs.getObject(6, OffsetDateTime.class).toInstant(), 0));
+                        }
+                    }
+                }
+            });
+        }
+        return rooms;
+    }
+
+    /**
+     * Ids of rooms the user is a member of.
+     */
+    public List<Integer> findRoomIdsByUserId(int userId) {
         try (Session session = sessionFactory.openSession()) {
-            Query<Room> q = session.createQuery(
-                    "SELECT rm.room FROM RoomMember rm WHERE rm.user.id = :userId ORDER BY rm.joinedAt DESC",
-                    Room.class);
+            Query<Integer> q = session.createQuery(
+                    "SELECT rm.room.id FROM RoomMember rm WHERE rm.user.id = :userId",
+                    Integer.class);
             q.setParameter("userId", userId);
             return q.list();
         }
     }
 
+    /**
+     * Ids of the room's members.
+     */
+    public List<Integer> findMemberIds(int roomId) {
+        try (Session session = sessionFactory.openSession()) {
+            Query<Integer> q = session.createQuery(
+                    "SELECT rm.user.id FROM RoomMember rm WHERE rm.room.id = :roomId",
+                    Integer.class);
+            q.setParameter("roomId", roomId);
+            return q.list();
+        }
+    }
+
     /**
      * Find existing DM room between two users, if any.
      */
@@ -69,7 +131,9 @@ public class RoomDAO {
     public void addMember(Room room, User user) {
         try (Session session = sessionFactory.openSession()) {
             session.beginTransaction();
-            RoomMember rm = new RoomMember(room, user);
+            // managed references: RoomMember cascades to both, and persist() rejects detached entities
+            RoomMember rm = new RoomMember(session.getReference(Room.class, room.getId()),
+                    session.getReference(User.class, user.getId()));
             session.persist(rm);
             session.getTransaction().commit();
         }
@@ -78,31 +142,16 @@ public class RoomDAO {
     public void removeMember(int roomId, int userId) {
         try (Session session = sessionFactory.openSession()) {
             session.beginTransaction();
-            Query<RoomMember> q = session.createQuery(
-                    "FROM RoomMember rm WHERE rm.room.id = :roomId AND rm.user.id = :userId",
-                    RoomMember.class);
-            q.setParameter("roomId", roomId);
-            q.setParameter("userId", userId);
-            RoomMember rm = q.uniqueResult();
-            if (rm != null) {
-                session.remove(rm);
-            }
+            // a bulk delete: session.remove() would cascade from RoomMember to the room and the user
+            session.createMutationQuery(
+                            "DELETE FROM RoomMember rm WHERE rm.room.id = :roomId AND rm.user.id = :userId")
+                    .setParameter("roomId", roomId)
+                    .setParameter("userId", userId)
+                    .executeUpdate();
             session.getTransaction().commit();
         }
     }
 
-    public boolean isMember(int roomId, int userId) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<Long> q = session.createQuery(
-                    "SELECT COUNT(rm) FROM RoomMember rm WHERE rm.room.id = :roomId AND rm.user.id = :userId",
-                    Long.class);
-            q.setParameter("roomId", roomId);
-            q.setParameter("userId", userId);
-            Long count = q.uniqueResult();
-            return count != null && count > 0;
-        }
-    }
-
     public List<User> getMembers(int roomId) {
         try (Session session = sessionFactory.openSession()) {
             Query<User> q = session.createQuery(
@@ -112,33 +161,4 @@ public class RoomDAO {
             return q.list();
         }
     }
-
-    public java.time.Instant getLastReadAt(int roomId, int userId) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<RoomMember> q = session.createQuery(
-                    "FROM RoomMember rm WHERE rm.room.id = :roomId AND rm.user.id = :userId",
-                    RoomMember.class);
-            q.setParameter("roomId", roomId);
-            q.setParameter("userId", userId);
-            RoomMember rm = q.uniqueResult();
-            return rm != null ? rm.getLastReadAt() : null;
-        }
-    }
-
-    public void updateLastReadAt(int roomId, int userId, java.time.Instant when) {
-        try (Session session = sessionFactory.openSession()) {
-            session.beginTransaction();
-            Query<RoomMember> q = session.createQuery(
-                    "FROM RoomMember rm WHERE rm.room.id = :roomId AND rm.user.id = :userId",
-                    RoomMember.class);
-            q.setParameter("roomId", roomId);
-            q.setParameter("userId", userId);
-            RoomMember rm = q.uniqueResult();
-            if (rm != null) {
-                rm.setLastReadAt(when);
-                session.merge(rm);
-            }
-            session.getTransaction().commit();
-        }
-    }
 }
@@ -1,20 +1,31 @@
 package com.tuganire.dao;
 
+import com.tuganire.model.CacheRegions;
+import com.tuganire.model.PresenceUpdate;
 import com.tuganire.model.User;
 import com.tuganire.util.HibernateUtil;
+import com.tuganire.util.Metrics;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.query.Query;
 
+import javax.cache.Cache;
+import java.sql.PreparedStatement;
+import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Hibernate-based DAO for User entity.
  */
 public class UserDAO {
 
+    private static final LongAdder EMAIL_HITS = Metrics.counter("hibernate.l2." + CacheRegions.USERS_BY_EMAIL + ".hits");
+    private static final LongAdder EMAIL_MISSES = Metrics.counter("hibernate.l2." + CacheRegions.USERS_BY_EMAIL + ".misses");
+
     private final SessionFactory sessionFactory = HibernateUtil.getSessionFactory();
+    private final Cache<Object, Object> idsByEmail = HibernateUtil.region(CacheRegions.USERS_BY_EMAIL);
 
     public Optional<User> findById(int id) {
         try (Session session = sessionFactory.openSession()) {
@@ -23,20 +34,43 @@ public class UserDAO {
         }
     }
 
+    /**
+     * Natural-id lookup, so repeated lookups are served by the second-level cache.
+     */
     public Optional<User> findByUsername(String username) {
         try (Session session = sessionFactory.openSession()) {
-            Query<User> q = session.createQuery("FROM User u WHERE u.username = :username", User.class);
-            q.setParameter("username", username);
-            return q.uniqueResultOptional();
+            return session.bySimpleNaturalId(User.class).loadOptional(username);
         }
     }
 
+    /**
+     * Looks the id up in the users-by-email region, then loads the user through the entity cache.
+     * A cached id only counts if that user still has the email, so an email that changed or moved
+     * to another account falls through to the query; nothing has to evict it on update.
+     */
     public Optional<User> findByEmail(String email) {
+        if (idsByEmail != null) {
+            Object id = idsByEmail.get(email);
+            if (id != null) {
+                Optional<User> user = findById((Integer) id);
+                if (user.isPresent() && email.equals(user.get().getEmail())) {
+                    EMAIL_HITS.increment();
+                    return user;
+                }
+                idsByEmail.remove(email, id);
+            }
+            EMAIL_MISSES.increment();
+        }
+        Optional<User> user;
         try (Session session = sessionFactory.openSession()) {
             Query<User> q = session.createQuery("FROM User u WHERE u.email = :email", User.class);
             q.setParameter("email", email);
-            return q.uniqueResultOptional();
+            user = q.uniqueResultOptional();
         }
+        if (idsByEmail != null) {
+            user.ifPresent(u -> idsByEmail.put(email, u.getId()));
+        }
+        return user;
     }
 
     public List<User> searchByUsernameOrEmail(String query, int limit) {
@@ -71,16 +105,29 @@ public class UserDAO {
         }
     }
 
-    public void setOnline(int userId, boolean online) {
+    /**
+     * Write buffered presence changes in one batched UPDATE. The JDBC write bypasses Hibernate,
+     * so the affected users are evicted from the second-level cache afterwards.
+     */
+    public void applyPresence(List<PresenceUpdate> updates) {
         try (Session session = sessionFactory.openSession()) {
             session.beginTransaction();
-            User user = session.get(User.class, userId);
-            if (user != null) {
-                user.setOnline(online);
-                user.setLastSeen(java.time.Instant.now());
-                session.merge(user);
-            }
+            session.doWork(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE users SET is_online = ?, last_seen = ? WHERE id = ?")) {
+                    for (PresenceUpdate u : updates) {
+                        ps.setBoolean(1, u.online());
+                        ps.setObject(2, u.lastSeen().atOffset(ZoneOffset.UTC));
+                        ps.setInt(3, u.userId());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            });
             session.getTransaction().commit();
         }
+        for (PresenceUpdate u : updates) {
+            sessionFactory.getCache().evictEntityData(User.class, u.userId());
+        }
     }
 }
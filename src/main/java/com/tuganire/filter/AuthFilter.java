@@ -1,7 +1,8 @@
 package com.tuganire.filter;
 
-import com.auth0.jwt.interfaces.DecodedJWT;
+import com.tuganire.model.TokenClaims;
 import com.tuganire.util.JwtUtil;
+import com.tuganire.util.RateLimiter;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -16,8 +17,10 @@ import java.util.Arrays;
 
 /**
  * JWT validation on every request. Protects all routes except login, register, assets, ws.
+ * Authenticated API routes are also rate limited per user (429 with Retry-After).
+ * Runs after StaticAssetFilter (order set in web.xml), which answers /assets/ itself.
  */
-@WebFilter(urlPatterns = {"/*"})
+@WebFilter(filterName = "AuthFilter", urlPatterns = {"/*"}, asyncSupported = true)
 public class AuthFilter extends HttpFilter {
 
     private static final String TOKEN_COOKIE = "token";
@@ -36,8 +39,8 @@ public class AuthFilter extends HttpFilter {
         }
 
         String token = getTokenFromCookie(req);
-        DecodedJWT jwt = JwtUtil.verify(token);
-        if (jwt == null) {
+        TokenClaims claims = JwtUtil.verify(token);
+        if (claims == null) {
             if (isAjax(req)) {
                 res.sendError(HttpServletResponse.SC_UNAUTHORIZED);
             } else {
@@ -46,8 +49,16 @@ public class AuthFilter extends HttpFilter {
             return;
         }
 
-        req.setAttribute("userId", JwtUtil.getUserId(jwt));
-        req.setAttribute("username", JwtUtil.getUsername(jwt));
+        int userId = claims.userId();
+        RateLimiter.Rule rule = RateLimiter.forPath(path);
+        if (rule != null && !RateLimiter.tryAcquire(rule, userId)) {
+            res.setHeader("Retry-After", Long.toString(rule.retryAfterSeconds()));
+            res.sendError(429, "Too many requests");
+            return;
+        }
+
+        req.setAttribute("userId", userId);
+        req.setAttribute("username", claims.username());
         chain.doFilter(req, res);
     }
 
@@ -0,0 +1,175 @@
+package com.tuganire.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves the fingerprinted assets under /assets/ produced by the build's asset stage. Mapped in
+ * web.xml ahead of AuthFilter, so asset requests never reach JWT checks.
+ *
+ * <p>A fingerprinted file never changes, so responses are cacheable forever. The .br or .gz
+ * variant is picked from Accept-Encoding. Bodies go out with Tomcat's sendfile when the
+ * connector supports it (no copy through the JVM heap), otherwise from bytes read once.
+ *
+ * <p>Also publishes the asset manifest as the {@code assets} application attribute, so JSPs
+ * write {@code ${assets['css/style.css']}}; without a manifest (build stage not run), each
+ * path maps to itself and the plain files are served as before.
+ */
+public class StaticAssetFilter extends HttpFilter {
+
+    private static final String PREFIX = "/assets/";
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final Map<String, Variant> variants = new ConcurrentHashMap<>();
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        super.init(config);
+        ServletContext ctx = config.getServletContext();
+        Manifest manifest = new Manifest();
+        try (InputStream in = ctx.getResourceAsStream("/WEB-INF/assets.properties")) {
+            if (in != null) {
+                Properties p = new Properties();
+                p.load(in);
+                p.stringPropertyNames().forEach(k -> manifest.put(k, p.getProperty(k)));
+            }
+        } catch (IOException e) {
+            throw new ServletException("Cannot read asset manifest", e);
+        }
+        ctx.setAttribute("assets", manifest);
+    }
+
+    @Override
+    protected void doFilter(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        String path = req.getRequestURI().substring(req.getContextPath().length());
+        if (!path.startsWith(PREFIX) || path.contains("..") || path.endsWith(".gz") || path.endsWith(".br")) {
+            res.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String accept = req.getHeader("Accept-Encoding");
+        Variant v = null;
+        String encoding = null;
+        if (accepts(accept, "br")) {
+            v = variant(path + ".br");
+            encoding = "br";
+        }
+        if (v == null && accepts(accept, "gzip")) {
+            v = variant(path + ".gz");
+            encoding = "gzip";
+        }
+        if (v == null) {
+            v = variant(path);
+            encoding = null;
+        }
+        if (v == null) {
+            res.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String mime = getServletContext().getMimeType(path);
+        res.setContentType(mime != null && (mime.startsWith("text/") || mime.endsWith("javascript"))
+                ? mime + ";charset=UTF-8" : mime);
+        res.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+        res.setHeader("Vary", "Accept-Encoding");
+        if (encoding != null) {
+            res.setHeader("Content-Encoding", encoding);
+        }
+        res.setContentLengthLong(v.length);
+        if ("HEAD".equals(req.getMethod())) {
+            return;
+        }
+        if (v.file != null && Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT))) {
+            req.setAttribute(SENDFILE_FILENAME, v.file);
+            req.setAttribute(SENDFILE_START, 0L);
+            req.setAttribute(SENDFILE_END, v.length);
+            return;
+        }
+        res.getOutputStream().write(v.bytes());
+    }
+
+    private Variant variant(String path) throws IOException {
+        Variant v = variants.get(path);
+        if (v != null) {
+            return v;
+        }
+        ServletContext ctx = getServletContext();
+        String file = ctx.getRealPath(path);
+        if (file != null && new File(file).isFile()) {
+            v = new Variant(file, new File(file).length(), null);
+        } else {
+            try (InputStream in = ctx.getResourceAsStream(path)) {
+                if (in == null) {
+                    return null; // misses are not cached: paths come from clients
+                }
+                byte[] bytes = in.readAllBytes();
+                v = new Variant(null, bytes.length, bytes);
+            }
+        }
+        variants.put(path, v);
+        return v;
+    }
+
+    private static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String c : acceptEncoding.split(",")) {
+            String[] parts = c.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase(coding)) {
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static final class Variant {
+        final String file;
+        final long length;
+        private volatile byte[] bytes;
+
+        Variant(String file, long length, byte[] bytes) {
+            this.file = file;
+            this.length = length;
+            this.bytes = bytes;
+        }
+
+        /** Contents, read on first use when sendfile is not available. */
+        byte[] bytes() throws IOException {
+            byte[] b = bytes;
+            if (b == null) {
+                try (InputStream in = new FileInputStream(file)) {
+                    b = in.readAllBytes();
+                }
+                bytes = b;
+            }
+            return b;
+        }
+    }
+
+    /** Source path -> fingerprinted path; unknown paths map to themselves. */
+    private static final class Manifest extends HashMap<String, String> {
+        @Override
+        public String get(Object key) {
+            String v = super.get(key);
+            return v != null ? v : (String) key;
+        }
+    }
+}
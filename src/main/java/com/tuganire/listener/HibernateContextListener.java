@@ -1,6 +1,10 @@
 package com.tuganire.listener;
 
+import com.tuganire.service.UnreadCounters;
+import com.tuganire.util.BackgroundTasks;
 import com.tuganire.util.HibernateUtil;
+import com.tuganire.util.WorkDispatcher;
+import com.tuganire.websocket.ClusterFanout;
 
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
@@ -8,6 +12,8 @@ import jakarta.servlet.annotation.WebListener;
 
 /**
  * Initializes Hibernate SessionFactory on app startup, shuts down on destroy.
+ * The cluster bus is started with the app so other nodes' presence is known before the first
+ * connection, and unread counters are rebuilt before the first message. Background tasks are stopped first so their final flushes still have a database.
  */
 @WebListener
 public class HibernateContextListener implements ServletContextListener {
@@ -15,10 +21,15 @@ public class HibernateContextListener implements ServletContextListener {
     @Override
     public void contextInitialized(ServletContextEvent sce) {
         HibernateUtil.getSessionFactory();
+        UnreadCounters.rebuild();
+        ClusterFanout.start();
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        WorkDispatcher.shutdown();
+        ClusterFanout.shutdown();
+        BackgroundTasks.shutdown();
         HibernateUtil.shutdown();
     }
 }
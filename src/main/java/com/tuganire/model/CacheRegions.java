@@ -0,0 +1,17 @@
+package com.tuganire.model;
+
+/**
+ * Second-level cache region names used by the entity annotations. HibernateUtil creates each
+ * region with its own size cap and time-to-live.
+ */
+public final class CacheRegions {
+
+    public static final String USERS = "users";
+    public static final String USERS_BY_USERNAME = "users-by-username";
+    /** Email to user id, kept by UserDAO: Hibernate caches a single natural id per entity. */
+    public static final String USERS_BY_EMAIL = "users-by-email";
+    public static final String ROOMS = "rooms";
+
+    private CacheRegions() {
+    }
+}
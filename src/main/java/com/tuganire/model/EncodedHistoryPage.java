@@ -0,0 +1,76 @@
+package com.tuganire.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+/**
+ * A page of room history already encoded as JSON: its messages in chronological order,
+ * separated by commas (the inside of a JSON array), with the ids of its first and last message
+ * for building cursors. Close it once written: a page served from RecentMessageCache borrows
+ * one of the cache's buffers.
+ */
+public final class EncodedHistoryPage implements AutoCloseable {
+
+    public static final EncodedHistoryPage EMPTY = new EncodedHistoryPage(new byte[0], 0, 0, 0, 0, false, false, null);
+
+    private final byte[] json;
+    private final int length;
+    private final int size;
+    private final long firstId;
+    private final long lastId;
+    private final boolean hasOlder;
+    private final boolean hasNewer;
+    private Consumer<byte[]> release;
+
+    /** The first {@code length} bytes of {@code json} hold {@code size} messages; release gets json back on close. */
+    public EncodedHistoryPage(byte[] json, int length, int size, long firstId, long lastId,
+                              boolean hasOlder, boolean hasNewer, Consumer<byte[]> release) {
+        this.json = json;
+        this.length = length;
+        this.size = size;
+        this.firstId = firstId;
+        this.lastId = lastId;
+        this.hasOlder = hasOlder;
+        this.hasNewer = hasNewer;
+        this.release = release;
+    }
+
+    /** Write the messages, comma-separated, without the enclosing brackets. */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(json, 0, length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long firstId() {
+        return firstId;
+    }
+
+    public long lastId() {
+        return lastId;
+    }
+
+    public boolean hasOlder() {
+        return hasOlder;
+    }
+
+    public boolean hasNewer() {
+        return hasNewer;
+    }
+
+    @Override
+    public void close() {
+        Consumer<byte[]> r = release;
+        release = null;
+        if (r != null) {
+            r.accept(json);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.tuganire.model;
+
+import java.util.List;
+
+/**
+ * One page of room history in chronological order, and whether more exists on either side.
+ */
+public record HistoryPage(List<MessageView> messages, boolean hasOlder, boolean hasNewer) {
+}
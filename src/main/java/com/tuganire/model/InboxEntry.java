@@ -0,0 +1,59 @@
+package com.tuganire.model;
+
+import java.time.Instant;
+
+/**
+ * One room in a user's inbox: the room, its latest message and the user's unread count.
+ * A class with getters so the sidebar JSP can read it like a Room.
+ */
+public class InboxEntry {
+
+    private final int id;
+    private final String name;
+    private final RoomType type;
+    private final Long lastMessageId;
+    private final String lastMessage;
+    private final Instant lastActivityAt;
+    private final long unreadCount;
+
+    public InboxEntry(int id, String name, RoomType type, Long lastMessageId, String lastMessage,
+                      Instant lastActivityAt, long unreadCount) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.lastMessageId = lastMessageId;
+        this.lastMessage = lastMessage;
+        this.lastActivityAt = lastActivityAt;
+        this.unreadCount = unreadCount;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public RoomType getType() {
+        return type;
+    }
+
+    /** Null if the room has no messages yet. */
+    public Long getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    /** Time of the latest message, or when the user joined if there is none. Inbox sort key. */
+    public Instant getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    public long getUnreadCount() {
+        return unreadCount;
+    }
+}
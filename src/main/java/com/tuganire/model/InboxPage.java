@@ -0,0 +1,9 @@
+package com.tuganire.model;
+
+import java.util.List;
+
+/**
+ * One page of a user's inbox, most recently active room first.
+ */
+public record InboxPage(List<InboxEntry> rooms, boolean hasMore) {
+}
@@ -10,13 +10,14 @@ import java.util.List;
 @Table(name = "messages", indexes = {
         @Index(name = "idx_messages_room", columnList = "room_id"),
         @Index(name = "idx_messages_sender", columnList = "sender_id"),
-        @Index(name = "idx_messages_created", columnList = "room_id, created_at")
+        @Index(name = "idx_messages_created", columnList = "room_id, created_at"),
+        @Index(name = "idx_messages_room_id", columnList = "room_id, id")
 })
 public class Message {
 
+    /** Snowflake id assigned in-process before insert (see SnowflakeId); also the history sort key. */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Integer id;
+    private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "room_id", nullable = false)
@@ -56,11 +57,11 @@ public class Message {
     }
 
     // ---------- Getters / Setters ----------
-    public Integer getId() {
+    public Long getId() {
         return id;
     }
 
-    public void setId(Integer id) {
+    public void setId(Long id) {
         this.id = id;
     }
 
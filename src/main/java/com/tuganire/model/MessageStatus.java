@@ -91,23 +91,23 @@ public class MessageStatus {
     @Embeddable
     public static class MessageStatusId implements Serializable {
         @Column(name = "message_id")
-        private Integer messageId;
+        private Long messageId;
         @Column(name = "user_id")
         private Integer userId;
 
         public MessageStatusId() {
         }
 
-        public MessageStatusId(Integer messageId, Integer userId) {
+        public MessageStatusId(Long messageId, Integer userId) {
             this.messageId = messageId;
             this.userId = userId;
         }
 
-        public Integer getMessageId() {
+        public Long getMessageId() {
             return messageId;
         }
 
-        public void setMessageId(Integer messageId) {
+        public void setMessageId(Long messageId) {
             this.messageId = messageId;
         }
 
@@ -0,0 +1,71 @@
+package com.tuganire.model;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Read-only, flat view of a message for history rendering: no associations, nothing lazy.
+ * A class with getters rather than a record so JSP EL can read its properties.
+ */
+public class MessageView {
+
+    private final long id;
+    private final int roomId;
+    private final int senderId;
+    private final String senderUsername;
+    private final String content;
+    private final String mediaUrl;
+    private final Long replyToId;
+    private final Instant createdAt;
+    private final Map<String, Integer> reactions;
+
+    public MessageView(long id, int roomId, int senderId, String senderUsername, String content,
+                       String mediaUrl, Long replyToId, Instant createdAt, Map<String, Integer> reactions) {
+        this.id = id;
+        this.roomId = roomId;
+        this.senderId = senderId;
+        this.senderUsername = senderUsername;
+        this.content = content;
+        this.mediaUrl = mediaUrl;
+        this.replyToId = replyToId;
+        this.createdAt = createdAt;
+        this.reactions = reactions;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getRoomId() {
+        return roomId;
+    }
+
+    public int getSenderId() {
+        return senderId;
+    }
+
+    public String getSenderUsername() {
+        return senderUsername;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public String getMediaUrl() {
+        return mediaUrl;
+    }
+
+    public Long getReplyToId() {
+        return replyToId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /** Emoji -> number of users who reacted with it, in order of first use. */
+    public Map<String, Integer> getReactions() {
+        return reactions;
+    }
+}
@@ -0,0 +1,10 @@
+package com.tuganire.model;
+
+import java.time.Instant;
+
+/**
+ * A chat message on its way into the messages table: ids only, no loaded entities.
+ * Written by MessageWriter; membership and the reply target are checked in the INSERT itself.
+ */
+public record NewMessage(long id, int roomId, int senderId, String content, Long replyToId, Instant createdAt) {
+}
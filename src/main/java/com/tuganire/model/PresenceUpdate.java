@@ -0,0 +1,9 @@
+package com.tuganire.model;
+
+import java.time.Instant;
+
+/**
+ * Pending write of users.is_online / users.last_seen, produced by PresenceService.
+ */
+public record PresenceUpdate(int userId, boolean online, Instant lastSeen) {
+}
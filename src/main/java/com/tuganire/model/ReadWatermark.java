@@ -0,0 +1,20 @@
+package com.tuganire.model;
+
+import java.time.Instant;
+
+/**
+ * "User has read room up to messageId" as of readAt. Not an entity: buffered in memory
+ * and flushed to room_members.last_read_at and message_status in batches.
+ */
+public record ReadWatermark(int userId, int roomId, long messageId, Instant readAt) {
+
+    /**
+     * The later of two watermarks for the same (user, room).
+     */
+    public ReadWatermark max(ReadWatermark other) {
+        if (other.messageId > messageId) {
+            return other;
+        }
+        return other.readAt.isAfter(readAt) && other.messageId == messageId ? other : this;
+    }
+}
@@ -1,12 +1,15 @@
 package com.tuganire.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.ROOMS)
 @Table(name = "rooms", indexes = {
         @Index(name = "idx_rooms_type", columnList = "type"),
         @Index(name = "idx_rooms_created_by", columnList = "created_by")
@@ -0,0 +1,7 @@
+package com.tuganire.model;
+
+/**
+ * The identity carried by a verified JWT, and when the token expires (epoch millis).
+ */
+public record TokenClaims(int userId, String username, long expiresAtMillis) {
+}
@@ -1,6 +1,10 @@
 package com.tuganire.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.time.Instant;
 import java.util.ArrayList;
@@ -8,8 +12,12 @@ import java.util.List;
 
 /**
  * User entity. Passwords are never stored - only passwordHash (jBCrypt).
+ * Cached in the second-level cache, by username (which never changes) as a natural id, and by
+ * email through UserDAO's users-by-email region.
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.USERS)
+@NaturalIdCache(region = CacheRegions.USERS_BY_USERNAME)
 @Table(name = "users", indexes = {
         @Index(name = "idx_users_username", columnList = "username", unique = true),
         @Index(name = "idx_users_email", columnList = "email", unique = true)
@@ -20,6 +28,7 @@ public class User {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
+    @NaturalId
     @Column(nullable = false, unique = true, length = 50)
     private String username;
 
@@ -5,13 +5,23 @@ import com.tuganire.model.User;
 import com.tuganire.util.JwtUtil;
 import com.tuganire.util.PasswordUtil;
 
+import java.util.Locale;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Authentication business logic: register, login (returns JWT), logout.
+ *
+ * <p>Usernames and emails are identifiers, not text: they are stored as typed (emails
+ * lowercased), never HTML-escaped, and login looks them up the same way. Pages escape them
+ * when rendering.
  */
 public class AuthService {
 
+    private static final int USERNAME_MIN = 3;
+    private static final int USERNAME_MAX = 50;
+    private static final int EMAIL_MAX = 255;
+
     private final UserDAO userDAO = new UserDAO();
 
     /**
@@ -21,15 +31,16 @@ public class AuthService {
         if (username == null || username.isBlank() || email == null || email.isBlank() || plainPassword == null || plainPassword.isBlank()) {
             return Optional.empty();
         }
-        username = sanitize(username.trim());
-        email = sanitize(email.trim().toLowerCase());
-        if (username.length() < 3 || username.length() > 50) {
+        username = username.trim();
+        email = normalizeEmail(email);
+        int length = username.codePointCount(0, username.length());
+        if (length < USERNAME_MIN || length > USERNAME_MAX || email.codePointCount(0, email.length()) > EMAIL_MAX) {
             return Optional.empty();
         }
-        if (userDAO.findByUsername(username).isPresent()) {
+        if (find(userDAO::findByUsername, username).isPresent()) {
             return Optional.empty();
         }
-        if (userDAO.findByEmail(email).isPresent()) {
+        if (find(userDAO::findByEmail, email).isPresent()) {
             return Optional.empty();
         }
         String hash = PasswordUtil.hash(plainPassword);
@@ -47,8 +58,8 @@ public class AuthService {
         }
         String input = usernameOrEmail.trim();
         Optional<User> userOpt = input.contains("@")
-                ? userDAO.findByEmail(input)
-                : userDAO.findByUsername(input);
+                ? find(userDAO::findByEmail, normalizeEmail(input))
+                : find(userDAO::findByUsername, input);
         if (userOpt.isEmpty()) {
             return Optional.empty();
         }
@@ -61,20 +72,34 @@ public class AuthService {
     }
 
     /**
-     * Logout - caller clears the cookie. This method can update lastSeen if needed.
+     * Look up an identifier as typed, then as register() used to store it: accounts created
+     * before identifiers were stored raw have {@code < > "} as entities.
      */
-    public void logout(int userId) {
-        userDAO.setOnline(userId, false);
+    private static Optional<User> find(Function<String, Optional<User>> lookup, String key) {
+        Optional<User> user = lookup.apply(key);
+        String legacy = legacyEscape(key);
+        if (user.isEmpty() && !legacy.equals(key)) {
+            user = lookup.apply(legacy);
+        }
+        return user;
+    }
+
+    /** The escaping register() applied before identifiers were stored raw; {@code '} and & were kept. */
+    private static String legacyEscape(String s) {
+        if (s.indexOf('<') < 0 && s.indexOf('>') < 0 && s.indexOf('"') < 0) {
+            return s;
+        }
+        return s.replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
     }
 
     /**
-     * Basic XSS sanitization: remove angle brackets and dangerous chars.
+     * Logout - caller clears the cookie. Refreshes lastSeen; online state follows the user's sockets.
      */
-    private String sanitize(String s) {
-        if (s == null) return "";
-        return s.replaceAll("<", "&lt;")
-                .replaceAll(">", "&gt;")
-                .replaceAll("\"", "&quot;")
-                .trim();
+    public void logout(int userId) {
+        PresenceService.touch(userId);
     }
 }
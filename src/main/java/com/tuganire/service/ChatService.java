@@ -1,14 +1,18 @@
 package com.tuganire.service;
 
 import com.tuganire.dao.MessageDAO;
-import com.tuganire.dao.RoomDAO;
-import com.tuganire.dao.UserDAO;
+import com.tuganire.model.EncodedHistoryPage;
+import com.tuganire.model.HistoryPage;
 import com.tuganire.model.Message;
+import com.tuganire.model.MessageView;
 import com.tuganire.model.Reaction;
-import com.tuganire.model.Room;
-import com.tuganire.model.User;
+import com.tuganire.model.NewMessage;
+import com.tuganire.util.SnowflakeId;
+import com.tuganire.util.TextSanitizer;
+import com.tuganire.websocket.ClusterFanout;
 
-import java.time.Instant;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,59 +22,111 @@ import java.util.Optional;
 public class ChatService {
 
     private final MessageDAO messageDAO = new MessageDAO();
-    private final RoomDAO roomDAO = new RoomDAO();
-    private final UserDAO userDAO = new UserDAO();
 
     /**
-     * Send a message. User must be a member of the room.
+     * Send a message. User must be a member of the room; a reply target outside the room is
+     * dropped. Membership is checked against MembershipIndex and again by the INSERT itself,
+     * so a cached room costs no lookups. Blocks until the group-commit batch has committed.
      */
-    public Optional<Message> sendMessage(int roomId, int senderId, String content, Integer replyToId) {
+    public Optional<NewMessage> sendMessage(int roomId, int senderId, String senderUsername, String content, Long replyToId) {
         if (content == null || content.isBlank()) {
             return Optional.empty();
         }
-        content = sanitize(content.trim());
-        if (content.length() > 10000) {
+        content = TextSanitizer.clean(content, 10000);
+        if (content == null) {
             return Optional.empty();
         }
-        if (!roomDAO.isMember(roomId, senderId)) {
+        if (!MembershipIndex.isMember(roomId, senderId)) {
             return Optional.empty();
         }
-        Optional<Room> roomOpt = roomDAO.findById(roomId);
-        Optional<User> senderOpt = userDAO.findById(senderId);
-        if (roomOpt.isEmpty() || senderOpt.isEmpty()) {
+        long id = SnowflakeId.next();
+        NewMessage msg = new NewMessage(id, roomId, senderId, content, replyToId, SnowflakeId.timestampOf(id));
+        NewMessage saved = MessageWriter.submit(msg).join();
+        if (saved == null) {
             return Optional.empty();
         }
-        Message msg = new Message(roomOpt.get(), senderOpt.get(), content);
-        if (replyToId != null) {
-            messageDAO.findById(replyToId).ifPresent(msg::setReplyTo);
-        }
-        Message saved = messageDAO.save(msg);
+        // cache first: a history read that sees the bumped version must also see the message
+        RecentMessageCache.append(new MessageView(id, roomId, senderId, senderUsername, content, null,
+                saved.replyToId(), msg.createdAt(), Collections.emptyMap()));
+        ClusterFanout.messageSent(roomId, senderId);
         return Optional.of(saved);
     }
 
     /**
-     * Load paginated message history for a room. User must be a member.
+     * Load a page of history for a room, each message encoded as JSON: the latest messages, or
+     * those just before beforeId / just after afterId. User must be a member. Messages are in
+     * chronological order. The newest page of a recently active room comes straight from
+     * RecentMessageCache. Close the page once it is written.
      */
-    public List<Message> loadHistory(int roomId, int userId, int limit, int offset) {
-        if (!roomDAO.isMember(roomId, userId)) {
-            return List.of();
+    public EncodedHistoryPage loadHistoryJson(int roomId, int userId, int limit, Long beforeId, Long afterId) {
+        if (!MembershipIndex.isMember(roomId, userId)) {
+            return EncodedHistoryPage.EMPTY;
+        }
+        if (beforeId == null && afterId == null) {
+            EncodedHistoryPage cached = RecentMessageCache.newest(roomId, limit);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        HistoryPage page = queryHistory(roomId, limit, beforeId, afterId);
+        List<MessageView> views = page.messages();
+        if (views.isEmpty()) {
+            return new EncodedHistoryPage(new byte[0], 0, 0, 0, 0, page.hasOlder(), page.hasNewer(), null);
         }
-        return messageDAO.findByRoomId(roomId, limit, offset);
+        ByteArrayOutputStream json = new ByteArrayOutputStream(views.size() * 256);
+        for (MessageView m : views) {
+            if (json.size() > 0) json.write(',');
+            json.writeBytes(RecentMessageCache.encode(m));
+        }
+        return new EncodedHistoryPage(json.toByteArray(), json.size(), views.size(), views.get(0).getId(),
+                views.get(views.size() - 1).getId(), page.hasOlder(), page.hasNewer(), null);
+    }
+
+    private HistoryPage queryHistory(int roomId, int limit, Long beforeId, Long afterId) {
+        // the newest page also fills the cache, so load at least as many as it keeps
+        boolean newest = beforeId == null && afterId == null;
+        int fetch = newest ? Math.max(limit, RecentMessageCache.capacity()) : limit;
+        long version = RecentMessageCache.version(roomId);
+        // one extra row tells whether another page exists in the direction we're reading
+        List<MessageView> list = messageDAO.findHistory(roomId, fetch + 1, beforeId, afterId);
+        boolean more = list.size() > fetch;
+        if (more) {
+            list.remove(list.size() - 1);
+        }
+        if (afterId != null) {
+            return new HistoryPage(list, true, more);
+        }
+        Collections.reverse(list);
+        if (newest) {
+            RecentMessageCache.fill(roomId, version, list, more);
+            if (list.size() > limit) {
+                return new HistoryPage(list.subList(list.size() - limit, list.size()), true, false);
+            }
+        }
+        return new HistoryPage(list, more, beforeId != null);
     }
 
     /**
-     * Mark message as read for a user.
+     * Whether the user may read the room's history (checked in memory).
      */
-    public void markAsSeen(int messageId, int userId) {
-        messageDAO.markAsRead(messageId, userId);
-        Optional<Message> msgOpt = messageDAO.findById(messageId);
-        msgOpt.ifPresent(msg -> roomDAO.updateLastReadAt(msg.getRoom().getId(), userId, Instant.now()));
+    public boolean canRead(int roomId, int userId) {
+        return MembershipIndex.isMember(roomId, userId);
+    }
+
+    /**
+     * Mark a room as read by the user up to messageId. Buffered and written in batches
+     * by ReadReceiptBuffer; membership and room are checked when the batch is applied.
+     * The unread counter is cleared at once.
+     */
+    public void markAsSeen(int roomId, long messageId, int userId) {
+        ReadReceiptBuffer.record(userId, roomId, messageId);
+        ClusterFanout.roomRead(roomId, userId);
     }
 
     /**
      * Add or update emoji reaction on a message.
      */
-    public Optional<Reaction> addReaction(int messageId, int userId, String emoji) {
+    public Optional<Reaction> addReaction(long messageId, int userId, String emoji) {
         if (emoji == null || emoji.isBlank() || emoji.length() > 10) {
             return Optional.empty();
         }
@@ -79,32 +135,17 @@ public class ChatService {
             return Optional.empty();
         }
         Message msg = msgOpt.get();
-        if (!roomDAO.isMember(msg.getRoom().getId(), userId)) {
+        if (!MembershipIndex.isMember(msg.getRoom().getId(), userId)) {
             return Optional.empty();
         }
         Reaction r = messageDAO.addOrUpdateReaction(messageId, userId, emoji.trim());
+        if (r != null) {
+            ClusterFanout.historyChanged(msg.getRoom().getId());
+        }
         return Optional.ofNullable(r);
     }
 
-    public Optional<Message> getMessage(int id) {
+    public Optional<Message> getMessage(long id) {
         return messageDAO.findById(id);
     }
-
-    public Optional<Message> getLastMessage(int roomId) {
-        return messageDAO.getLastMessage(roomId);
-    }
-
-    public long countUnread(int roomId, int userId) {
-        Instant lastRead = roomDAO.getLastReadAt(roomId, userId);
-        return messageDAO.countUnread(roomId, userId, lastRead);
-    }
-
-    private String sanitize(String s) {
-        if (s == null) return "";
-        return s.replaceAll("<", "&lt;")
-                .replaceAll(">", "&gt;")
-                .replaceAll("\"", "&quot;")
-                .replaceAll("'", "&#39;")
-                .trim();
-    }
 }
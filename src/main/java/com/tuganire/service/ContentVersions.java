@@ -0,0 +1,61 @@
+package com.tuganire.service;
+
+import com.tuganire.util.NodeIdentity;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory version numbers for what GET /messages and GET /rooms return, used as ETags so
+ * unchanged responses can be answered with 304 without a query.
+ *
+ * <p>A room's version changes when its history does (message sent, reaction); a user's inbox
+ * version when any of their rooms gets a message, they read a room, or join or leave one.
+ * Versions are striped by id, so a bump may also change other rooms' or users' tags: that
+ * only costs them a full response. Tags carry this process's instance id, since the numbers
+ * mean nothing on another node or after a restart.
+ *
+ * <p>Bump only once the change is visible to readers, RecentMessageCache included: a reader
+ * that sees the new tag and then an old page would store the old page under the new tag.
+ */
+public final class ContentVersions {
+
+    private static final int STRIPES = 4096;
+    private static final AtomicLongArray ROOMS = new AtomicLongArray(STRIPES);
+    private static final AtomicLongArray USERS = new AtomicLongArray(STRIPES);
+    private static final String EPOCH = NodeIdentity.instanceId();
+
+    private ContentVersions() {
+    }
+
+    /** A message was committed in the room: its history and every member's inbox changed. */
+    public static void messageSent(int roomId) {
+        ROOMS.incrementAndGet(stripe(roomId));
+        for (int userId : MembershipIndex.membersOf(roomId)) {
+            USERS.incrementAndGet(stripe(userId));
+        }
+    }
+
+    /** The room's history changed without a new message (e.g. a reaction). */
+    public static void historyChanged(int roomId) {
+        ROOMS.incrementAndGet(stripe(roomId));
+    }
+
+    /** The user's inbox changed (read a room, joined or left one). */
+    public static void inboxChanged(int userId) {
+        USERS.incrementAndGet(stripe(userId));
+    }
+
+    /** Weak ETag for the room's history. Read it before loading, never after. */
+    public static String historyTag(int roomId) {
+        return "W/\"h" + EPOCH + "-" + ROOMS.get(stripe(roomId)) + "\"";
+    }
+
+    /** Weak ETag for the user's inbox. Read it before loading, never after. */
+    public static String inboxTag(int userId) {
+        return "W/\"i" + EPOCH + "-" + USERS.get(stripe(userId)) + "\"";
+    }
+
+    private static int stripe(int id) {
+        return (id * 0x9E3779B9 >>> 20) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,318 @@
+package com.tuganire.service;
+
+import com.tuganire.dao.RoomDAO;
+import com.tuganire.util.EnvConfig;
+import com.tuganire.util.Metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * In-memory room membership: roomId -> member userIds and userId -> roomIds, each an
+ * immutable open-addressing int set. Entries load lazily from room_members on first use and
+ * are kept up to date by {@link #added(int, int)} / {@link #removed(int, int)}, which run
+ * wherever membership changes (locally or on another node, via ClusterFanout).
+ *
+ * <p>Lookups probe a hash table keyed by id, so a hit is O(1) and allocation-free, and memory
+ * follows the number of cached entries rather than the largest id. Each side holds at most
+ * MEMBERSHIP_MAX_ROOMS / MEMBERSHIP_MAX_USERS entries, empty ones included; cold ones are
+ * evicted with the CLOCK approximation of LRU.
+ */
+public final class MembershipIndex {
+
+    private static final RoomDAO ROOM_DAO = new RoomDAO();
+
+    private static final Side ROOMS = new Side("rooms",
+            Integer.parseInt(EnvConfig.get("MEMBERSHIP_MAX_ROOMS", "50000")),
+            roomId -> toArray(ROOM_DAO.findMemberIds(roomId)));
+    private static final Side USERS = new Side("users",
+            Integer.parseInt(EnvConfig.get("MEMBERSHIP_MAX_USERS", "100000")),
+            userId -> toArray(ROOM_DAO.findRoomIdsByUserId(userId)));
+
+    private MembershipIndex() {
+    }
+
+    public static boolean isMember(int roomId, int userId) {
+        return ROOMS.get(roomId).contains(userId);
+    }
+
+    /** User ids of the room's members. */
+    public static int[] membersOf(int roomId) {
+        return ROOMS.get(roomId).toArray();
+    }
+
+    /** Room ids the user belongs to. */
+    public static int[] roomsOf(int userId) {
+        return USERS.get(userId).toArray();
+    }
+
+    /** Call after a membership row is committed. */
+    public static void added(int roomId, int userId) {
+        ROOMS.update(roomId, userId, true);
+        USERS.update(userId, roomId, true);
+    }
+
+    /** Call after a membership row is deleted. */
+    public static void removed(int roomId, int userId) {
+        ROOMS.update(roomId, userId, false);
+        USERS.update(userId, roomId, false);
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        int[] a = new int[ids.size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = ids.get(i);
+        }
+        return a;
+    }
+
+    /**
+     * One direction of the index: id -> IntSet, with lazy loading and CLOCK eviction.
+     *
+     * <p>Entries live in an open-addressing table keyed by id. Readers probe it without locking;
+     * writers hold the lock and publish every change through the table's volatile slots. Evicted
+     * slots become tombstones, and the table is rebuilt when tombstones and entries together
+     * fill three quarters of it, so its size follows the number of entries, not the ids.
+     */
+    private static final class Side {
+        private static final int MIN_CAPACITY = 1024;
+        private static final Entry TOMBSTONE = new Entry(0, null);
+
+        private final int max;
+        private final IntFunction<int[]> loader;
+        private final LongAdder hits;
+        private final LongAdder misses;
+        private final LongAdder evictions;
+
+        private final Object lock = new Object();
+        private volatile AtomicReferenceArray<Entry> table = new AtomicReferenceArray<>(MIN_CAPACITY);
+        // Guarded by lock
+        private int loaded;
+        private int tombstones;
+        private int hand;
+        /** Bumped by every update, so a load that raced with one is not cached. */
+        private long version;
+
+        Side(String name, int max, IntFunction<int[]> loader) {
+            this.max = max;
+            this.loader = loader;
+            this.hits = Metrics.counter("membership." + name + ".hits");
+            this.misses = Metrics.counter("membership." + name + ".misses");
+            this.evictions = Metrics.counter("membership." + name + ".evictions");
+            Metrics.gauge("membership." + name + ".loaded", () -> {
+                synchronized (lock) {
+                    return loaded;
+                }
+            });
+        }
+
+        IntSet get(int id) {
+            AtomicReferenceArray<Entry> t = table;
+            int i = find(t, id);
+            Entry e = i >= 0 ? t.get(i) : null;
+            if (e != null && e != TOMBSTONE) { // evicted since the probe: load it again
+                hits.increment();
+                if (!e.referenced) {
+                    e.referenced = true;
+                }
+                return e.ids;
+            }
+            misses.increment();
+            long before;
+            synchronized (lock) {
+                before = version;
+            }
+            // Empty results (a user without rooms, an unknown room) are cached as well; the
+            // bound and CLOCK keep made-up ids from crowding out real entries for long.
+            IntSet ids = IntSet.of(loader.apply(id));
+            synchronized (lock) {
+                if (version == before && find(table, id) < 0) {
+                    install(new Entry(id, ids));
+                }
+            }
+            return ids;
+        }
+
+        void update(int id, int value, boolean add) {
+            synchronized (lock) {
+                version++;
+                AtomicReferenceArray<Entry> t = table;
+                int i = find(t, id);
+                if (i >= 0) {
+                    // not loaded: the next lookup reads the committed row from the database
+                    IntSet ids = t.get(i).ids;
+                    t.set(i, new Entry(id, add ? ids.with(value) : ids.without(value)));
+                }
+            }
+        }
+
+        /** Slot holding id's entry, or -1. A concurrent eviction may leave a tombstone there. */
+        private static int find(AtomicReferenceArray<Entry> t, int id) {
+            int mask = t.length() - 1;
+            for (int i = IntSet.mix(id) & mask; ; i = (i + 1) & mask) {
+                Entry e = t.get(i);
+                if (e == null) return -1;
+                if (e != TOMBSTONE && e.id == id) return i;
+            }
+        }
+
+        // Guarded by lock
+        private void install(Entry e) {
+            if (loaded + tombstones + 1 > table.length() / 4 * 3) {
+                rehash();
+            }
+            AtomicReferenceArray<Entry> t = table;
+            int mask = t.length() - 1;
+            int i = IntSet.mix(e.id) & mask;
+            while (t.get(i) != null && t.get(i) != TOMBSTONE) {
+                i = (i + 1) & mask;
+            }
+            if (t.get(i) == TOMBSTONE) {
+                tombstones--;
+            }
+            t.set(i, e);
+            if (++loaded > max) {
+                evict(max - max / 8);
+            }
+        }
+
+        // Guarded by lock. Sized for twice the live entries; readers keep using the old table
+        // until they next read the field, and it stays a valid (if stale) snapshot.
+        private void rehash() {
+            int capacity = MIN_CAPACITY;
+            while (capacity / 2 < loaded + 1) {
+                capacity <<= 1;
+            }
+            AtomicReferenceArray<Entry> old = table;
+            AtomicReferenceArray<Entry> t = new AtomicReferenceArray<>(capacity);
+            int mask = capacity - 1;
+            for (int j = 0; j < old.length(); j++) {
+                Entry e = old.get(j);
+                if (e == null || e == TOMBSTONE) continue;
+                int i = IntSet.mix(e.id) & mask;
+                while (t.get(i) != null) {
+                    i = (i + 1) & mask;
+                }
+                t.set(i, e);
+            }
+            tombstones = 0;
+            hand = 0;
+            table = t;
+        }
+
+        // Guarded by lock. CLOCK: clear reference bits until an unreferenced entry is found.
+        private void evict(int target) {
+            AtomicReferenceArray<Entry> t = table;
+            int n = t.length();
+            for (int steps = 0; loaded > target && steps < 2 * n; steps++) {
+                hand = (hand + 1) % n;
+                Entry e = t.get(hand);
+                if (e == null || e == TOMBSTONE) continue;
+                if (e.referenced) {
+                    e.referenced = false;
+                } else {
+                    t.set(hand, TOMBSTONE);
+                    loaded--;
+                    tombstones++;
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        final int id;
+        final IntSet ids;
+        volatile boolean referenced = true;
+
+        Entry(int id, IntSet ids) {
+            this.id = id;
+            this.ids = ids;
+        }
+    }
+
+    /**
+     * Immutable set of positive ints with linear probing; 0 marks an empty slot.
+     * The table is at least twice the size, so probes stay short and always terminate.
+     */
+    private static final class IntSet {
+        private final int[] table;
+        private final int size;
+
+        private IntSet(int[] table, int size) {
+            this.table = table;
+            this.size = size;
+        }
+
+        static IntSet of(int[] values) {
+            int capacity = Integer.highestOneBit(Math.max(2, values.length * 2 + 1) - 1) << 1;
+            int[] table = new int[capacity];
+            int size = 0;
+            for (int v : values) {
+                if (v > 0 && insert(table, v)) {
+                    size++;
+                }
+            }
+            return new IntSet(table, size);
+        }
+
+        boolean contains(int v) {
+            int mask = table.length - 1;
+            for (int i = mix(v) & mask; ; i = (i + 1) & mask) {
+                int x = table[i];
+                if (x == v) return true;
+                if (x == 0) return false;
+            }
+        }
+
+        IntSet with(int v) {
+            if (contains(v)) {
+                return this;
+            }
+            int[] values = toArray();
+            int[] grown = Arrays.copyOf(values, values.length + 1);
+            grown[values.length] = v;
+            return of(grown);
+        }
+
+        IntSet without(int v) {
+            if (!contains(v)) {
+                return this;
+            }
+            int[] values = new int[size - 1];
+            int n = 0;
+            for (int x : table) {
+                if (x != 0 && x != v) values[n++] = x;
+            }
+            return of(values);
+        }
+
+        int[] toArray() {
+            int[] values = new int[size];
+            int n = 0;
+            for (int x : table) {
+                if (x != 0) values[n++] = x;
+            }
+            return values;
+        }
+
+        private static boolean insert(int[] table, int v) {
+            int mask = table.length - 1;
+            for (int i = mix(v) & mask; ; i = (i + 1) & mask) {
+                if (table[i] == v) return false;
+                if (table[i] == 0) {
+                    table[i] = v;
+                    return true;
+                }
+            }
+        }
+
+        static int mix(int v) {
+            int h = v * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.tuganire.service;
+
+import com.tuganire.dao.MessageDAO;
+import com.tuganire.model.NewMessage;
+import com.tuganire.util.BackgroundTasks;
+import com.tuganire.util.EnvConfig;
+import com.tuganire.util.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Group commit for new messages. Senders enqueue a message and get a future; a single writer
+ * thread takes everything queued (up to MESSAGE_BATCH_MAX) and inserts it in one transaction.
+ * Each future completes only after that transaction commits: with the message as stored (a reply
+ * to another room loses its reply id), or null if the sender is not a member of the room.
+ *
+ * <p>The writer never waits for a batch to fill: it stops collecting as soon as the queue is
+ * empty, so a lone message is written at once. Batches form on their own under load, from the
+ * messages that arrive while the previous batch commits. MESSAGE_BATCH_WINDOW_MS only caps how
+ * long the writer keeps draining while messages keep arriving.
+ */
+public final class MessageWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MessageWriter.class);
+
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Long.parseLong(EnvConfig.get("MESSAGE_BATCH_WINDOW_MS", "2")));
+    private static final int MAX_BATCH = Integer.parseInt(EnvConfig.get("MESSAGE_BATCH_MAX", "256"));
+
+    private static final LongAdder WRITTEN = Metrics.counter("messages.written");
+    private static final LongAdder BATCHES = Metrics.counter("messages.batches");
+    private static final LongAdder COMMIT_NANOS = Metrics.counter("messages.commitNanos");
+    private static final LongAdder FAILURES = Metrics.counter("messages.batchFailures");
+    private static final LongAdder REJECTED = Metrics.counter("messages.rejected");
+    private static final LongAdder REFUSED = Metrics.counter("messages.refused");
+
+    private record Pending(NewMessage message, CompletableFuture<NewMessage> done) {
+    }
+
+    private static final BlockingQueue<Pending> QUEUE = new LinkedBlockingQueue<>(
+            Integer.parseInt(EnvConfig.get("MESSAGE_WRITER_QUEUE", "10000")));
+    private static final MessageDAO MESSAGE_DAO = new MessageDAO();
+
+    private static volatile boolean running = true;
+    private static final Thread WRITER = new Thread(MessageWriter::run, "tuganire-message-writer");
+
+    static {
+        Metrics.gauge("messages.queued", QUEUE::size);
+        WRITER.setDaemon(true);
+        WRITER.start();
+        BackgroundTasks.onShutdown(MessageWriter::shutdown);
+    }
+
+    private MessageWriter() {
+    }
+
+    /**
+     * Queue a message for the next batch. The future fails if the queue is full or the batch fails.
+     */
+    public static CompletableFuture<NewMessage> submit(NewMessage message) {
+        CompletableFuture<NewMessage> done = new CompletableFuture<>();
+        if (!running || !QUEUE.offer(new Pending(message, done))) {
+            REJECTED.increment();
+            done.completeExceptionally(new RejectedExecutionException("Message writer is saturated"));
+        }
+        return done;
+    }
+
+    private static void run() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !QUEUE.isEmpty()) {
+            try {
+                Pending first = QUEUE.poll(250, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + WINDOW_NANOS;
+                while (batch.size() < MAX_BATCH && System.nanoTime() < deadline) {
+                    if (QUEUE.drainTo(batch, MAX_BATCH - batch.size()) == 0) {
+                        break; // nothing else waiting: commit now rather than wait for more
+                    }
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                running = false;
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static void write(List<Pending> batch) {
+        List<NewMessage> messages = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            messages.add(p.message());
+        }
+        long start = System.nanoTime();
+        NewMessage[] stored;
+        try {
+            stored = MESSAGE_DAO.insertBatch(messages);
+        } catch (RuntimeException e) {
+            FAILURES.increment();
+            if (batch.size() > 1) {
+                // one bad row (e.g. a reply target deleted meanwhile) must not fail everyone's send
+                for (Pending p : batch) {
+                    write(List.of(p));
+                }
+                return;
+            }
+            LOG.warn("Message insert failed", e);
+            batch.get(0).done().completeExceptionally(e);
+            return;
+        }
+        COMMIT_NANOS.add(System.nanoTime() - start);
+        BATCHES.increment();
+        for (int i = 0; i < batch.size(); i++) {
+            Pending p = batch.get(i);
+            if (stored[i] != null) {
+                WRITTEN.increment();
+                p.done().complete(stored[i]);
+            } else {
+                REFUSED.increment();
+                p.done().complete(null);
+            }
+        }
+    }
+
+    /**
+     * Stop accepting messages and write whatever is still queued.
+     */
+    static void shutdown() {
+        running = false;
+        try {
+            WRITER.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
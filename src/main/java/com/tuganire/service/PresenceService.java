@@ -0,0 +1,233 @@
+package com.tuganire.service;
+
+import com.tuganire.dao.UserDAO;
+import com.tuganire.model.PresenceUpdate;
+import com.tuganire.util.BackgroundTasks;
+import com.tuganire.util.EnvConfig;
+import com.tuganire.util.Metrics;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Authoritative in-memory online state. Sessions are ref-counted per user in an int array
+ * indexed by userId, online flags live in a BitSet, and changes are written behind to
+ * users.is_online / users.last_seen in periodic batched UPDATEs.
+ *
+ * <p>A user becomes online with their first session and offline only when
+ * {@link #expireIfDisconnected(int)} is called after the presence grace period.
+ * In a cluster, other nodes report their users through {@link #remote(int, String, String, boolean)};
+ * a user is online while any node holds them. Nodes also send heartbeats, and
+ * {@link #expireSilentNodes(long)} drops everything held by a node that has gone quiet, so users
+ * of a node that crashed without announcing them offline do not stay online forever.
+ */
+public final class PresenceService {
+
+    private static final long FLUSH_MS = Long.parseLong(EnvConfig.get("PRESENCE_FLUSH_INTERVAL_MS", "2000"));
+
+    private static final LongAdder FLUSHED = Metrics.counter("presence.rowsFlushed");
+    private static final LongAdder FLUSH_FAILURES = Metrics.counter("presence.flushFailures");
+
+    private static final Object LOCK = new Object();
+    // Guarded by LOCK
+    private static int[] sessions = new int[1024];
+    private static long[] lastSeen = new long[1024];
+    private static final BitSet ONLINE = new BitSet();
+    private static final BitSet DIRTY = new BitSet();
+    private static int onlineCount;
+    /** userId -> other nodes that currently hold the user online. */
+    private static final Map<Integer, RemoteUser> REMOTE = new HashMap<>();
+    /** Instance id of every other node -> when it was last heard from (epoch millis). */
+    private static final Map<String, Long> NODES = new HashMap<>();
+
+    private static final UserDAO USER_DAO = new UserDAO();
+
+    private static final class RemoteUser {
+        final Set<String> nodes = new HashSet<>();
+        String username;
+    }
+
+    static {
+        Metrics.gauge("presence.online", () -> {
+            synchronized (LOCK) {
+                return onlineCount;
+            }
+        });
+        BackgroundTasks.every("presence-flush", FLUSH_MS, PresenceService::flush);
+        BackgroundTasks.onShutdown(PresenceService::flush);
+    }
+
+    private PresenceService() {
+    }
+
+    /**
+     * A session opened. Returns true if this is the user's first live session.
+     */
+    public static boolean connect(int userId) {
+        synchronized (LOCK) {
+            ensureCapacity(userId);
+            if (sessions[userId]++ > 0) {
+                return false;
+            }
+            if (!ONLINE.get(userId)) {
+                ONLINE.set(userId);
+                onlineCount++;
+                touchLocked(userId);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A session closed. Returns true if the user has no live sessions left.
+     * The user still counts as online until {@link #expireIfDisconnected(int)}.
+     */
+    public static boolean disconnect(int userId) {
+        synchronized (LOCK) {
+            if (userId >= sessions.length || sessions[userId] == 0) {
+                return false;
+            }
+            return --sessions[userId] == 0;
+        }
+    }
+
+    /**
+     * Mark the user offline if they still have no sessions. Returns true if they went offline.
+     */
+    public static boolean expireIfDisconnected(int userId) {
+        synchronized (LOCK) {
+            if (userId >= sessions.length || sessions[userId] > 0 || !ONLINE.get(userId)) {
+                return false;
+            }
+            ONLINE.clear(userId);
+            onlineCount--;
+            touchLocked(userId);
+            return true;
+        }
+    }
+
+    /**
+     * Record activity (e.g. logout) so last_seen is refreshed on the next flush.
+     */
+    public static void touch(int userId) {
+        synchronized (LOCK) {
+            ensureCapacity(userId);
+            touchLocked(userId);
+        }
+    }
+
+    /**
+     * Another node reported a user going online or offline.
+     */
+    public static void remote(int userId, String username, String origin, boolean online) {
+        synchronized (LOCK) {
+            NODES.put(origin, System.currentTimeMillis());
+            if (online) {
+                RemoteUser u = REMOTE.computeIfAbsent(userId, k -> new RemoteUser());
+                u.nodes.add(origin);
+                u.username = username;
+            } else {
+                RemoteUser u = REMOTE.get(userId);
+                if (u != null && u.nodes.remove(origin) && u.nodes.isEmpty()) {
+                    REMOTE.remove(userId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Another node is alive.
+     */
+    public static void heartbeat(String origin) {
+        synchronized (LOCK) {
+            NODES.put(origin, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Forget every node not heard from for longer than timeoutMs, with the users it held.
+     * Returns userId -> username of the users that are offline as a result.
+     */
+    public static Map<Integer, String> expireSilentNodes(long timeoutMs) {
+        long cutoff = System.currentTimeMillis() - timeoutMs;
+        Map<Integer, String> offline = new HashMap<>();
+        synchronized (LOCK) {
+            Set<String> dead = new HashSet<>();
+            NODES.entrySet().removeIf(e -> e.getValue() < cutoff && dead.add(e.getKey()));
+            if (dead.isEmpty()) {
+                return offline;
+            }
+            REMOTE.entrySet().removeIf(e -> {
+                RemoteUser u = e.getValue();
+                if (!u.nodes.removeAll(dead) || !u.nodes.isEmpty()) {
+                    return false;
+                }
+                if (!ONLINE.get(e.getKey())) {
+                    offline.put(e.getKey(), u.username);
+                }
+                return true;
+            });
+        }
+        return offline;
+    }
+
+    public static boolean isOnline(int userId) {
+        synchronized (LOCK) {
+            return onlineLocked(userId);
+        }
+    }
+
+    public static boolean isConnected(int userId) {
+        synchronized (LOCK) {
+            return userId < sessions.length && sessions[userId] > 0;
+        }
+    }
+
+    static void flush() {
+        List<PresenceUpdate> batch = new ArrayList<>();
+        synchronized (LOCK) {
+            for (int id = DIRTY.nextSetBit(0); id >= 0; id = DIRTY.nextSetBit(id + 1)) {
+                batch.add(new PresenceUpdate(id, onlineLocked(id), Instant.ofEpochMilli(lastSeen[id])));
+            }
+            DIRTY.clear();
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            USER_DAO.applyPresence(batch);
+            FLUSHED.add(batch.size());
+        } catch (RuntimeException e) {
+            FLUSH_FAILURES.increment();
+            synchronized (LOCK) {
+                batch.forEach(u -> DIRTY.set(u.userId()));
+            }
+            throw e;
+        }
+    }
+
+    private static boolean onlineLocked(int userId) {
+        return ONLINE.get(userId) || REMOTE.containsKey(userId);
+    }
+
+    private static void touchLocked(int userId) {
+        lastSeen[userId] = System.currentTimeMillis();
+        DIRTY.set(userId);
+    }
+
+    private static void ensureCapacity(int userId) {
+        if (userId >= sessions.length) {
+            int size = Math.max(userId + 1, sessions.length * 2);
+            sessions = Arrays.copyOf(sessions, size);
+            lastSeen = Arrays.copyOf(lastSeen, size);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.tuganire.service;
+
+import com.tuganire.dao.MessageDAO;
+import com.tuganire.model.ReadWatermark;
+import com.tuganire.util.BackgroundTasks;
+import com.tuganire.util.EnvConfig;
+import com.tuganire.util.Metrics;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces SEEN receipts into one monotonic watermark per (user, room) and writes them
+ * in batched JDBC statements every READ_FLUSH_INTERVAL_MS.
+ *
+ * <p>A read is acknowledged (the flush listener fires and SEEN is broadcast) only after
+ * its batch commits. Failed batches are merged back for the next flush, and pending
+ * watermarks are flushed on shutdown.
+ */
+public final class ReadReceiptBuffer {
+
+    private static final long FLUSH_MS = Long.parseLong(EnvConfig.get("READ_FLUSH_INTERVAL_MS", "500"));
+
+    private static final LongAdder RECEIVED = Metrics.counter("reads.received");
+    private static final LongAdder FLUSHED = Metrics.counter("reads.flushed");
+    private static final LongAdder FLUSH_FAILURES = Metrics.counter("reads.flushFailures");
+
+    private static final Map<Long, ReadWatermark> PENDING = new ConcurrentHashMap<>();
+    private static final MessageDAO MESSAGE_DAO = new MessageDAO();
+    private static volatile Consumer<List<ReadWatermark>> listener = w -> { };
+
+    static {
+        Metrics.gauge("reads.pending", PENDING::size);
+        BackgroundTasks.every("read-flush", FLUSH_MS, ReadReceiptBuffer::flush);
+        BackgroundTasks.onShutdown(ReadReceiptBuffer::flush);
+    }
+
+    private ReadReceiptBuffer() {
+    }
+
+    /**
+     * Record that userId has read roomId up to messageId. Only the highest id per (user, room) is kept.
+     */
+    public static void record(int userId, int roomId, long messageId) {
+        RECEIVED.increment();
+        PENDING.merge(key(userId, roomId), new ReadWatermark(userId, roomId, messageId, Instant.now()), ReadWatermark::max);
+    }
+
+    /**
+     * Called with the watermarks of each committed batch (only those that matched a member and message).
+     */
+    public static void onFlushed(Consumer<List<ReadWatermark>> l) {
+        listener = l;
+    }
+
+    static synchronized void flush() {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+        List<ReadWatermark> batch = new ArrayList<>(PENDING.size());
+        for (Long key : PENDING.keySet()) {
+            ReadWatermark w = PENDING.remove(key);
+            if (w != null) {
+                batch.add(w);
+            }
+        }
+        List<ReadWatermark> applied;
+        try {
+            applied = MESSAGE_DAO.applyReadWatermarks(batch);
+        } catch (RuntimeException e) {
+            FLUSH_FAILURES.increment();
+            for (ReadWatermark w : batch) {
+                PENDING.merge(key(w.userId(), w.roomId()), w, ReadWatermark::max);
+            }
+            throw e;
+        }
+        FLUSHED.add(applied.size());
+        if (!applied.isEmpty()) {
+            listener.accept(applied);
+        }
+    }
+
+    private static long key(int userId, int roomId) {
+        return ((long) userId << 32) | (roomId & 0xffffffffL);
+    }
+}
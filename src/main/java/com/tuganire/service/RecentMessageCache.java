@@ -0,0 +1,277 @@
+package com.tuganire.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.tuganire.model.EncodedHistoryPage;
+import com.tuganire.model.MessageView;
+import com.tuganire.util.EnvConfig;
+import com.tuganire.util.Metrics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The newest HISTORY_CACHE_MESSAGES messages of recently active rooms, pre-encoded as JSON, so
+ * opening a room or catching up after a reconnect does not query the database.
+ *
+ * <p>Each cached room owns one slab of HISTORY_CACHE_ROOM_KB off-heap (direct) memory used as
+ * a byte ring: new messages are appended after the newest and overwrite the oldest. Only
+ * HISTORY_CACHE_MB of slabs are ever allocated; they are reused, never freed, so the cache adds
+ * nothing for the GC to trace or copy. When all slabs are taken, the room least recently
+ * read or written gives up its slab.
+ *
+ * <p>A hit copies the page out of the slab in one pass, under the lock, into a pooled buffer
+ * that the caller writes to the response as is and hands back by closing the page; the slab
+ * itself cannot be written out unlocked, as the next append may overwrite it.
+ *
+ * <p>A room is filled from the database on its first miss and appended to as messages are sent
+ * on this node. Anything else that changes its history (a message sent on another node, a
+ * reaction) drops it, and the next read refills it.
+ */
+public final class RecentMessageCache {
+
+    private static final int MESSAGES = Math.max(1, Integer.parseInt(EnvConfig.get("HISTORY_CACHE_MESSAGES", "50")));
+    private static final int SLAB_BYTES = Integer.parseInt(EnvConfig.get("HISTORY_CACHE_ROOM_KB", "64")) * 1024;
+    private static final int MAX_SLABS = (int) Math.min(Integer.MAX_VALUE,
+            Long.parseLong(EnvConfig.get("HISTORY_CACHE_MB", "32")) * 1024 * 1024 / SLAB_BYTES);
+
+    private static final Gson GSON = new Gson();
+
+    private static final LongAdder HITS = Metrics.counter("history.cache.hits");
+    private static final LongAdder MISSES = Metrics.counter("history.cache.misses");
+    private static final LongAdder EVICTIONS = Metrics.counter("history.cache.evictions");
+
+    private static final Object LOCK = new Object();
+    // Guarded by LOCK. Access order: the eldest entry is the least recently active room.
+    private static final LinkedHashMap<Integer, Ring> ROOMS = new LinkedHashMap<>(256, 0.75f, true);
+    private static final Deque<ByteBuffer> FREE = new ArrayDeque<>();
+    /** Page buffers returned by closed pages; at most SCRATCH_POOL are kept. */
+    private static final Deque<byte[]> SCRATCH = new ArrayDeque<>();
+    private static final int SCRATCH_POOL = 64;
+    private static int slabs;
+    /** Bumped on every change to a room (striped by room id), so a fill that raced with one is dropped. */
+    private static final long[] VERSIONS = new long[256];
+
+    static {
+        Metrics.gauge("history.cache.rooms", () -> {
+            synchronized (LOCK) {
+                return ROOMS.size();
+            }
+        });
+        Metrics.gauge("history.cache.offHeapBytes", () -> {
+            synchronized (LOCK) {
+                return (long) slabs * SLAB_BYTES;
+            }
+        });
+    }
+
+    private RecentMessageCache() {
+    }
+
+    /** How many messages a room keeps; fills should load at least this many. */
+    public static int capacity() {
+        return MESSAGES;
+    }
+
+    /**
+     * The newest {@code limit} messages of the room, or null if the room is not cached or the
+     * cache cannot tell whether older messages exist. Close the page once it is written.
+     */
+    public static EncodedHistoryPage newest(int roomId, int limit) {
+        synchronized (LOCK) {
+            Ring ring = ROOMS.get(roomId);
+            EncodedHistoryPage page = ring != null ? ring.newest(limit) : null;
+            (page != null ? HITS : MISSES).increment();
+            return page;
+        }
+    }
+
+    private static void release(byte[] scratch) {
+        synchronized (LOCK) {
+            if (SCRATCH.size() < SCRATCH_POOL) {
+                SCRATCH.push(scratch);
+            }
+        }
+    }
+
+    /** Read before loading the room from the database, and pass to {@link #fill}. */
+    public static long version(int roomId) {
+        synchronized (LOCK) {
+            return VERSIONS[stripe(roomId)];
+        }
+    }
+
+    /**
+     * Cache the room's newest messages (chronological) loaded from the database, unless it
+     * changed since {@code version} was read.
+     */
+    public static void fill(int roomId, long version, List<MessageView> messages, boolean hasOlder) {
+        if (MAX_SLABS == 0 || messages.isEmpty()) {
+            return;
+        }
+        List<byte[]> encoded = new ArrayList<>(messages.size());
+        for (MessageView m : messages) {
+            encoded.add(encode(m));
+        }
+        synchronized (LOCK) {
+            if (VERSIONS[stripe(roomId)] != version || ROOMS.containsKey(roomId)) {
+                return;
+            }
+            ByteBuffer slab = takeSlab();
+            if (slab == null) {
+                return;
+            }
+            Ring ring = new Ring(slab, hasOlder);
+            for (int i = 0; i < encoded.size(); i++) {
+                if (!ring.append(messages.get(i).getId(), encoded.get(i))) {
+                    FREE.push(slab);
+                    return;
+                }
+            }
+            ROOMS.put(roomId, ring);
+        }
+    }
+
+    /** A message sent on this node was committed. */
+    public static void append(MessageView m) {
+        byte[] json = encode(m);
+        synchronized (LOCK) {
+            VERSIONS[stripe(m.getRoomId())]++;
+            Ring ring = ROOMS.get(m.getRoomId());
+            if (ring != null && !ring.append(m.getId(), json)) {
+                FREE.push(ROOMS.remove(m.getRoomId()).slab);
+            }
+        }
+    }
+
+    /** The room's history changed in a way this node cannot apply: drop it. */
+    public static void invalidate(int roomId) {
+        synchronized (LOCK) {
+            VERSIONS[stripe(roomId)]++;
+            Ring ring = ROOMS.remove(roomId);
+            if (ring != null) {
+                FREE.push(ring.slab);
+            }
+        }
+    }
+
+    /** The JSON form of a message served by GET /messages. */
+    public static byte[] encode(MessageView m) {
+        JsonObject o = new JsonObject();
+        o.addProperty("id", String.valueOf(m.getId()));
+        o.addProperty("roomId", m.getRoomId());
+        o.addProperty("senderId", m.getSenderId());
+        o.addProperty("senderUsername", m.getSenderUsername());
+        o.addProperty("content", m.getContent());
+        o.addProperty("mediaUrl", m.getMediaUrl());
+        o.addProperty("replyToId", m.getReplyToId() != null ? String.valueOf(m.getReplyToId()) : null);
+        o.addProperty("createdAt", m.getCreatedAt().toString());
+        JsonObject reactions = new JsonObject();
+        m.getReactions().forEach(reactions::addProperty);
+        o.add("reactions", reactions);
+        return GSON.toJson(o).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Guarded by LOCK
+    private static ByteBuffer takeSlab() {
+        if (!FREE.isEmpty()) {
+            return FREE.pop();
+        }
+        if (slabs < MAX_SLABS) {
+            slabs++;
+            return ByteBuffer.allocateDirect(SLAB_BYTES);
+        }
+        Iterator<Ring> eldest = ROOMS.values().iterator();
+        if (!eldest.hasNext()) {
+            return null;
+        }
+        ByteBuffer slab = eldest.next().slab;
+        eldest.remove();
+        EVICTIONS.increment();
+        return slab;
+    }
+
+    private static int stripe(int roomId) {
+        return roomId & (VERSIONS.length - 1);
+    }
+
+    /**
+     * Up to MESSAGES entries laid out back to back in a slab, oldest first from writePos
+     * onwards (wrapping). An entry never straddles the end of the slab.
+     */
+    private static final class Ring {
+        final ByteBuffer slab;
+        final long[] ids = new long[MESSAGES];
+        final int[] offsets = new int[MESSAGES];
+        final int[] lengths = new int[MESSAGES];
+        int oldest;
+        int count;
+        int writePos;
+        /** Whether the room has messages older than the oldest one here. */
+        boolean hasOlder;
+
+        Ring(ByteBuffer slab, boolean hasOlder) {
+            this.slab = slab;
+            this.hasOlder = hasOlder;
+        }
+
+        /** False if the entry cannot be kept (too large, or older than the newest). */
+        boolean append(long id, byte[] json) {
+            int len = json.length;
+            if (len > slab.capacity() || count > 0 && id <= ids[(oldest + count - 1) % MESSAGES]) {
+                return false;
+            }
+            boolean wrap = writePos + len > slab.capacity();
+            int pos = wrap ? 0 : writePos;
+            while (count > 0) {
+                int start = offsets[oldest];
+                // on a wrap, everything past writePos is older than what sits at the start
+                boolean overlaps = start >= pos && start < pos + len || wrap && start >= writePos;
+                if (!overlaps && count < MESSAGES) {
+                    break;
+                }
+                oldest = (oldest + 1) % MESSAGES;
+                count--;
+                hasOlder = true;
+            }
+            int i = (oldest + count) % MESSAGES;
+            slab.put(pos, json);
+            ids[i] = id;
+            offsets[i] = pos;
+            lengths[i] = len;
+            count++;
+            writePos = pos + len;
+            return true;
+        }
+
+        // Guarded by LOCK
+        EncodedHistoryPage newest(int limit) {
+            if (limit > count && hasOlder) {
+                return null;
+            }
+            int n = Math.min(limit, count);
+            if (n == 0) {
+                return null;
+            }
+            // entries fit in one slab, so a page fits in a slab plus its commas
+            byte[] out = SCRATCH.isEmpty() ? new byte[SLAB_BYTES + MESSAGES] : SCRATCH.pop();
+            int length = 0;
+            int first = (oldest + count - n) % MESSAGES;
+            for (int k = 0; k < n; k++) {
+                int i = (first + k) % MESSAGES;
+                if (k > 0) out[length++] = ',';
+                slab.get(offsets[i], out, length, lengths[i]);
+                length += lengths[i];
+            }
+            return new EncodedHistoryPage(out, length, n, ids[first], ids[(first + n - 1) % MESSAGES],
+                    n < count || hasOlder, false, RecentMessageCache::release);
+        }
+    }
+}
@@ -2,10 +2,17 @@ package com.tuganire.service;
 
 import com.tuganire.dao.RoomDAO;
 import com.tuganire.dao.UserDAO;
+import com.tuganire.model.InboxEntry;
+import com.tuganire.model.InboxPage;
 import com.tuganire.model.Room;
 import com.tuganire.model.RoomType;
 import com.tuganire.model.User;
+import com.tuganire.util.PageCursor;
+import com.tuganire.util.TextSanitizer;
+import com.tuganire.websocket.ClusterFanout;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,8 +31,8 @@ public class RoomService {
         if (name == null || name.isBlank()) {
             return Optional.empty();
         }
-        name = sanitize(name.trim());
-        if (name.length() > 100) {
+        name = TextSanitizer.clean(name, 100);
+        if (name == null) {
             return Optional.empty();
         }
         Optional<User> creatorOpt = userDAO.findById(creatorId);
@@ -35,6 +42,7 @@ public class RoomService {
         Room room = new Room(name, RoomType.GROUP, creatorOpt.get());
         roomDAO.save(room);
         roomDAO.addMember(room, creatorOpt.get());
+        ClusterFanout.membership(room.getId(), creatorId, true);
         return Optional.of(room);
     }
 
@@ -54,11 +62,14 @@ public class RoomService {
         if (existing.isPresent()) {
             return existing;
         }
-        String dmName = u1.get().getUsername() + " & " + u2.get().getUsername();
+        // room names are stored escaped, usernames raw
+        String dmName = TextSanitizer.escapeHtml(u1.get().getUsername() + " & " + u2.get().getUsername());
         Room room = new Room(dmName, RoomType.DM, u1.get());
         roomDAO.save(room);
         roomDAO.addMember(room, u1.get());
         roomDAO.addMember(room, u2.get());
+        ClusterFanout.membership(room.getId(), userId1, true);
+        ClusterFanout.membership(room.getId(), userId2, true);
         return Optional.of(room);
     }
 
@@ -75,10 +86,11 @@ public class RoomService {
         if (room.getType() != RoomType.GROUP) {
             return false; // DMs are created with both members
         }
-        if (roomDAO.isMember(roomId, userId)) {
+        if (MembershipIndex.isMember(roomId, userId)) {
             return true; // already a member
         }
         roomDAO.addMember(room, userOpt.get());
+        ClusterFanout.membership(roomId, userId, true);
         return true;
     }
 
@@ -86,32 +98,73 @@ public class RoomService {
      * Leave a room. Cannot leave if you're the only member (or handle that case).
      */
     public boolean leaveRoom(int roomId, int userId) {
-        if (!roomDAO.isMember(roomId, userId)) {
+        if (!MembershipIndex.isMember(roomId, userId)) {
             return false;
         }
         roomDAO.removeMember(roomId, userId);
+        ClusterFanout.membership(roomId, userId, false);
         return true;
     }
 
     /**
-     * List rooms the user is a member of.
+     * One page of the user's inbox, most recently active room first. Pass the previous page's
+     * last entry as {@code after} to continue (null for the first page).
      */
-    public List<Room> listRoomsForUser(int userId) {
-        return roomDAO.findRoomsByUserId(userId);
+    public InboxPage inbox(int userId, int limit, InboxEntry after) {
+        List<InboxEntry> rows = roomDAO.findInbox(userId, limit + 1,
+                after != null ? after.getLastActivityAt() : null,
+                after != null ? after.getId() : null);
+        boolean hasMore = rows.size() > limit;
+        List<InboxEntry> rooms = new ArrayList<>(Math.min(rows.size(), limit));
+        for (InboxEntry e : hasMore ? rows.subList(0, limit) : rows) {
+            rooms.add(new InboxEntry(e.getId(), e.getName(), e.getType(), e.getLastMessageId(), e.getLastMessage(),
+                    e.getLastActivityAt(), UnreadCounters.get(e.getId(), userId)));
+        }
+        return new InboxPage(rooms, hasMore);
+    }
+
+    /**
+     * Opaque cursor continuing the inbox after the given entry.
+     */
+    public static String inboxCursor(InboxEntry last) {
+        Instant at = last.getLastActivityAt();
+        return PageCursor.encode(at.getEpochSecond() * 1_000_000L + at.getNano() / 1_000, last.getId());
+    }
+
+    /**
+     * The position an inbox cursor points at, as a key-only entry; null for no cursor.
+     * Throws IllegalArgumentException if the cursor is malformed.
+     */
+    public static InboxEntry decodeInboxCursor(String cursor) {
+        long[] parts = PageCursor.decode(cursor, 2);
+        if (parts == null) {
+            return null;
+        }
+        Instant at = Instant.ofEpochSecond(Math.floorDiv(parts[0], 1_000_000L),
+                Math.floorMod(parts[0], 1_000_000L) * 1_000L);
+        return new InboxEntry((int) parts[1], null, null, null, null, at, 0);
+    }
+
+    /**
+     * Ids of rooms the user is a member of.
+     */
+    public List<Integer> listRoomIdsForUser(int userId) {
+        int[] ids = MembershipIndex.roomsOf(userId);
+        List<Integer> list = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            list.add(id);
+        }
+        return list;
     }
 
     /**
      * Get room by id. User must be a member.
      */
     public Optional<Room> getRoom(int roomId, int userId) {
-        Optional<Room> roomOpt = roomDAO.findById(roomId);
-        if (roomOpt.isEmpty()) {
-            return Optional.empty();
-        }
-        if (!roomDAO.isMember(roomId, userId)) {
+        if (!MembershipIndex.isMember(roomId, userId)) {
             return Optional.empty();
         }
-        return roomOpt;
+        return roomDAO.findById(roomId);
     }
 
     public List<User> getMembers(int roomId) {
@@ -119,14 +172,6 @@ public class RoomService {
     }
 
     public boolean isMember(int roomId, int userId) {
-        return roomDAO.isMember(roomId, userId);
-    }
-
-    private String sanitize(String s) {
-        if (s == null) return "";
-        return s.replaceAll("<", "&lt;")
-                .replaceAll(">", "&gt;")
-                .replaceAll("\"", "&quot;")
-                .trim();
+        return MembershipIndex.isMember(roomId, userId);
     }
 }
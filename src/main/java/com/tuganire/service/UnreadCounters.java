@@ -0,0 +1,202 @@
+package com.tuganire.service;
+
+import com.tuganire.dao.MessageDAO;
+import com.tuganire.util.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Unread message counts per (room, member), kept in memory and updated as messages are sent
+ * and rooms are read, so asking for a count is a hash lookup instead of a COUNT over messages.
+ *
+ * <p>Only non-zero counts are stored: a sent message adds one for every member but the sender,
+ * a read removes the entry. Counts live in striped open-addressing maps from a packed
+ * (user, room) long to an int, so an entry costs 12 bytes and no objects.
+ *
+ * <p>Nothing extra is written to the database: messages are already persisted by MessageWriter
+ * and reads by ReadReceiptBuffer (room_members.last_read_at), so {@link #rebuild()} recomputes
+ * every count from those at startup. ClusterFanout applies the same updates on every node.
+ */
+public final class UnreadCounters {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UnreadCounters.class);
+
+    private static final int STRIPES = 64;
+    private static final Stripe[] MAP = new Stripe[STRIPES];
+    private static final MessageDAO MESSAGE_DAO = new MessageDAO();
+
+    private static final LongAdder INCREMENTS = Metrics.counter("unread.increments");
+    private static final LongAdder RESETS = Metrics.counter("unread.resets");
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            MAP[i] = new Stripe();
+        }
+        Metrics.gauge("unread.entries", () -> {
+            long n = 0;
+            for (Stripe s : MAP) {
+                n += s.size();
+            }
+            return n;
+        });
+    }
+
+    private UnreadCounters() {
+    }
+
+    /**
+     * Reload every count from the database. Call once at startup, before messages are accepted.
+     */
+    public static void rebuild() {
+        long start = System.currentTimeMillis();
+        for (Stripe s : MAP) {
+            s.clear();
+        }
+        long[] rows = new long[1];
+        MESSAGE_DAO.loadUnreadCounts(null, null, (roomId, userId, count) -> {
+            long key = key(userId, roomId);
+            stripe(key).put(key, count);
+            rows[0]++;
+        });
+        LOG.info("Rebuilt {} unread counters in {} ms", rows[0], System.currentTimeMillis() - start);
+    }
+
+    public static int get(int roomId, int userId) {
+        long key = key(userId, roomId);
+        return stripe(key).get(key);
+    }
+
+    /** A message was committed: one more unread for every member except the sender. */
+    public static void messageSent(int roomId, int senderId) {
+        for (int userId : MembershipIndex.membersOf(roomId)) {
+            if (userId != senderId) {
+                long key = key(userId, roomId);
+                stripe(key).add(key, 1);
+                INCREMENTS.increment();
+            }
+        }
+    }
+
+    /** The user read the room. */
+    public static void read(int roomId, int userId) {
+        long key = key(userId, roomId);
+        if (stripe(key).remove(key)) {
+            RESETS.increment();
+        }
+    }
+
+    /** The user joined the room: everything already in it counts as unread. */
+    public static void joined(int roomId, int userId) {
+        MESSAGE_DAO.loadUnreadCounts(roomId, userId, (r, u, count) -> {
+            long key = key(userId, roomId);
+            stripe(key).put(key, count);
+        });
+    }
+
+    public static void left(int roomId, int userId) {
+        long key = key(userId, roomId);
+        stripe(key).remove(key);
+    }
+
+    private static long key(int userId, int roomId) {
+        return ((long) userId << 32) | (roomId & 0xffffffffL);
+    }
+
+    private static Stripe stripe(long key) {
+        return MAP[(int) (mix(key) >>> 58)]; // top bits: the stripe's own table uses the low ones
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Open-addressing long -> int map with linear probing and backward-shift deletion.
+     * Key 0 marks an empty slot; real keys are never 0 since user ids are positive.
+     */
+    private static final class Stripe {
+        private long[] keys = new long[64];
+        private int[] values = new int[64];
+        private int size;
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            keys = new long[64];
+            values = new int[64];
+            size = 0;
+        }
+
+        synchronized int get(long key) {
+            int i = slot(key);
+            return keys[i] == key ? values[i] : 0;
+        }
+
+        synchronized void put(long key, int value) {
+            int i = slot(key);
+            if (keys[i] != key) {
+                keys[i] = key;
+                if (++size * 2 > keys.length) {
+                    values[i] = value;
+                    grow();
+                    return;
+                }
+            }
+            values[i] = value;
+        }
+
+        synchronized void add(long key, int delta) {
+            int i = slot(key);
+            put(key, keys[i] == key ? values[i] + delta : delta);
+        }
+
+        synchronized boolean remove(long key) {
+            int i = slot(key);
+            if (keys[i] != key) {
+                return false;
+            }
+            int mask = keys.length - 1;
+            // shift later entries of the probe run back so lookups never stop at the hole
+            for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+                int home = (int) mix(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    i = j;
+                }
+            }
+            keys[i] = 0;
+            values[i] = 0;
+            size--;
+            return true;
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int i = (int) mix(key) & mask;
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int j = slot(oldKeys[i]);
+                    keys[j] = oldKeys[i];
+                    values[j] = oldValues[i];
+                }
+            }
+        }
+    }
+}
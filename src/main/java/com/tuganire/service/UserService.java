@@ -3,6 +3,8 @@ package com.tuganire.service;
 import com.tuganire.dao.UserDAO;
 import com.tuganire.model.User;
 
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,6 +13,8 @@ import java.util.Optional;
  */
 public class UserService {
 
+    private static final int AVATAR_MAX = 500;
+
     private final UserDAO userDAO = new UserDAO();
 
     public Optional<User> findById(int id) {
@@ -29,31 +33,46 @@ public class UserService {
     }
 
     /**
-     * Update user avatar URL.
+     * Update user avatar URL. It is stored as given if it is an absolute http(s) URL; pages escape
+     * it when rendering. Blank clears the avatar, anything else is rejected.
      */
     public boolean updateAvatar(int userId, String avatarUrl) {
         Optional<User> userOpt = userDAO.findById(userId);
         if (userOpt.isEmpty()) {
             return false;
         }
+        String avatar = null; // blank clears the avatar
+        if (avatarUrl != null && !avatarUrl.isBlank()) {
+            avatar = avatarUrl(avatarUrl);
+            if (avatar == null) {
+                return false;
+            }
+        }
         User user = userOpt.get();
-        user.setAvatar(sanitize(avatarUrl));
+        user.setAvatar(avatar);
         userDAO.update(user);
         return true;
     }
 
     /**
-     * Set user online/offline status.
+     * Online status from the in-memory PresenceService (not the possibly stale users.is_online).
      */
-    public void setOnline(int userId, boolean online) {
-        userDAO.setOnline(userId, online);
+    public boolean isOnline(int userId) {
+        return PresenceService.isOnline(userId);
     }
 
-    private String sanitize(String s) {
-        if (s == null || s.isBlank()) return null;
-        return s.replaceAll("<", "")
-                .replaceAll(">", "")
-                .replaceAll("\"", "")
-                .trim();
+    /** The trimmed URL if it is absolute http(s) with a host and fits the column, else null. */
+    private static String avatarUrl(String s) {
+        String url = s.trim();
+        if (url.codePointCount(0, url.length()) > AVATAR_MAX) {
+            return null;
+        }
+        try {
+            URI uri = new URI(url);
+            boolean web = "http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme());
+            return web && uri.getHost() != null ? url : null;
+        } catch (URISyntaxException e) {
+            return null;
+        }
     }
 }
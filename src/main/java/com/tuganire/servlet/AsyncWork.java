@@ -0,0 +1,71 @@
+package com.tuganire.servlet;
+
+import com.tuganire.util.WorkDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Runs a servlet handler on WorkDispatcher when EXECUTION_MODE=virtual, releasing the
+ * container thread while the handler blocks on JDBC. Otherwise runs it inline.
+ */
+final class AsyncWork {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncWork.class);
+    private static final String DISPATCHED = "tuganire.asyncDispatched";
+
+    @FunctionalInterface
+    interface Handler {
+        void handle(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException;
+    }
+
+    private AsyncWork() {
+    }
+
+    static void run(HttpServletRequest req, HttpServletResponse res, Handler handler)
+            throws ServletException, IOException {
+        if (!WorkDispatcher.isEnabled() || !req.isAsyncSupported()) {
+            handler.handle(req, res);
+            return;
+        }
+        AsyncContext ctx = req.startAsync();
+        WorkDispatcher.submit(() -> {
+            try {
+                handler.handle(req, res);
+            } catch (Exception e) {
+                // the container never sees it, so log it here as it would
+                LOG.error("Dispatched {} {} failed", req.getMethod(), req.getRequestURI(), e);
+                if (!res.isCommitted()) {
+                    try {
+                        res.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    } catch (IOException sendFailed) {
+                        LOG.warn("Could not send 500 for {} {}", req.getMethod(), req.getRequestURI(), sendFailed);
+                    }
+                }
+            } finally {
+                if (req.getAttribute(DISPATCHED) == null) {
+                    ctx.complete();
+                }
+            }
+        });
+    }
+
+    /**
+     * Forward to a JSP from either a container thread or a dispatched one.
+     */
+    static void forward(HttpServletRequest req, HttpServletResponse res, String path)
+            throws ServletException, IOException {
+        if (req.isAsyncStarted()) {
+            req.setAttribute(DISPATCHED, Boolean.TRUE);
+            req.getAsyncContext().dispatch(path);
+        } else {
+            req.getRequestDispatcher(path).forward(req, res);
+        }
+    }
+}
@@ -1,8 +1,9 @@
 package com.tuganire.servlet;
 
-import com.google.gson.Gson;
-import com.tuganire.model.Message;
+import com.tuganire.model.EncodedHistoryPage;
 import com.tuganire.service.ChatService;
+import com.tuganire.service.ContentVersions;
+import com.tuganire.util.PageCursor;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -11,22 +12,24 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
- * GET /messages — Load paginated message history (JSON).
+ * GET /messages?roomId=&limit=[&before=|&after=] — A page of message history (JSON).
+ * before/after take the opaque cursors returned as prevCursor (older) and nextCursor (newer).
  */
-@WebServlet(urlPatterns = {"/messages"})
+@WebServlet(urlPatterns = {"/messages"}, asyncSupported = true)
 public class ChatServlet extends HttpServlet {
 
     private final ChatService chatService = new ChatService();
-    private final Gson gson = new Gson();
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+        AsyncWork.run(req, res, this::handleGet);
+    }
+
+    private void handleGet(HttpServletRequest req, HttpServletResponse res) throws IOException {
         Integer userId = (Integer) req.getAttribute("userId");
         if (userId == null) {
             res.sendError(HttpServletResponse.SC_UNAUTHORIZED);
@@ -45,26 +48,36 @@ public class ChatServlet extends HttpServlet {
             return;
         }
         int limit = parseIntParam(req.getParameter("limit"), 50);
-        int offset = parseIntParam(req.getParameter("offset"), 0);
         limit = Math.min(Math.max(limit, 1), 100);
+        Long before;
+        Long after;
+        try {
+            before = PageCursor.decode(req.getParameter("before"));
+            after = PageCursor.decode(req.getParameter("after"));
+        } catch (IllegalArgumentException e) {
+            res.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor");
+            return;
+        }
 
-        List<Message> messages = chatService.loadHistory(roomId, userId, limit, offset);
-        List<Map<String, Object>> payload = new ArrayList<>();
-        for (Message m : messages) {
-            Map<String, Object> map = new HashMap<>();
-            map.put("id", m.getId());
-            map.put("roomId", m.getRoom().getId());
-            map.put("senderId", m.getSender().getId());
-            map.put("senderUsername", m.getSender().getUsername());
-            map.put("content", m.getContent());
-            map.put("mediaUrl", m.getMediaUrl());
-            map.put("replyToId", m.getReplyTo() != null ? m.getReplyTo().getId() : null);
-            map.put("createdAt", m.getCreatedAt().toString());
-            payload.add(map);
+        // members only: a non-member's (empty) response must not be revalidated as a member's
+        if (chatService.canRead(roomId, userId)
+                && ETags.notModified(req, res, ContentVersions.historyTag(roomId))) {
+            return;
+        }
+        // messages are spliced in as pre-encoded JSON; cursors are base64url and need no escaping
+        try (EncodedHistoryPage page = chatService.loadHistoryJson(roomId, userId, limit, before, after);
+             OutputStream body = JsonResponse.body(req, res)) {
+            body.write("{\"messages\":[".getBytes(StandardCharsets.UTF_8));
+            page.writeTo(body);
+            body.write(']');
+            if (page.hasOlder() && !page.isEmpty()) {
+                body.write((",\"prevCursor\":\"" + PageCursor.encode(page.firstId()) + "\"").getBytes(StandardCharsets.UTF_8));
+            }
+            if (page.hasNewer() && !page.isEmpty()) {
+                body.write((",\"nextCursor\":\"" + PageCursor.encode(page.lastId()) + "\"").getBytes(StandardCharsets.UTF_8));
+            }
+            body.write('}');
         }
-        res.setContentType("application/json");
-        res.setCharacterEncoding("UTF-8");
-        res.getWriter().write(gson.toJson(payload));
     }
 
     private int parseIntParam(String s, int def) {
@@ -0,0 +1,40 @@
+package com.tuganire.servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Conditional GET support: tag the response, and answer 304 if the client already has it.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * Set the ETag (and make clients revalidate every time). Returns true, with a 304 sent,
+     * if If-None-Match already names it; the caller then writes no body.
+     */
+    static boolean notModified(HttpServletRequest req, HttpServletResponse res, String etag) {
+        res.setHeader("ETag", etag);
+        res.setHeader("Cache-Control", "private, no-cache");
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || opaque(candidate).equals(opaque)) {
+                res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // If-None-Match uses weak comparison: W/"x" matches "x"
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
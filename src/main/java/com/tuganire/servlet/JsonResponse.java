@@ -0,0 +1,162 @@
+package com.tuganire.servlet;
+
+import com.google.gson.stream.JsonWriter;
+import com.tuganire.util.EnvConfig;
+import com.tuganire.util.Metrics;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a JSON response body straight to the servlet output stream. The first
+ * JSON_GZIP_MIN_BYTES are held back: a body that ends within them is sent as is, with a
+ * Content-Length; a longer one is gzipped if the client accepts it. Memory per response is
+ * that buffer plus the writer's and compressor's fixed-size buffers, whatever the body's size.
+ *
+ * <p>Bytes before and after compression are counted in {@code http.json.*} metrics.
+ */
+public final class JsonResponse extends OutputStream {
+
+    private static final int GZIP_MIN_BYTES = Integer.parseInt(EnvConfig.get("JSON_GZIP_MIN_BYTES", "1024"));
+    private static final int WRITER_CHARS = 2048;
+
+    private static final LongAdder RESPONSES = Metrics.counter("http.json.responses");
+    private static final LongAdder GZIPPED = Metrics.counter("http.json.gzipped");
+    private static final LongAdder BYTES_RAW = Metrics.counter("http.json.bytesRaw");
+    private static final LongAdder BYTES_SENT = Metrics.counter("http.json.bytesSent");
+
+    private final HttpServletResponse res;
+    private final boolean gzipAccepted;
+    private final byte[] head = new byte[GZIP_MIN_BYTES];
+    private int headLength;
+    private OutputStream out; // null until the head overflows
+    private CountingStream wire;
+    private long raw;
+
+    private JsonResponse(HttpServletRequest req, HttpServletResponse res) {
+        this.res = res;
+        this.gzipAccepted = acceptsGzip(req.getHeader("Accept-Encoding"));
+        res.addHeader("Vary", "Accept-Encoding");
+        res.setContentType("application/json");
+        res.setCharacterEncoding("UTF-8");
+    }
+
+    /** A raw JSON body; close it to finish the response. */
+    public static OutputStream body(HttpServletRequest req, HttpServletResponse res) {
+        return new JsonResponse(req, res);
+    }
+
+    /** A JsonWriter over {@link #body}; null members are omitted. Close it to finish the response. */
+    public static JsonWriter writer(HttpServletRequest req, HttpServletResponse res) {
+        // JsonWriter writes a few chars at a time, and OutputStreamWriter allocates on every write
+        JsonWriter w = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(body(req, res), StandardCharsets.UTF_8), WRITER_CHARS));
+        w.setSerializeNulls(false);
+        return w;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        raw++;
+        if (out == null) {
+            if (headLength < head.length) {
+                head[headLength++] = (byte) b;
+                return;
+            }
+            start();
+        }
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        raw += len;
+        if (out == null) {
+            if (headLength + len <= head.length) {
+                System.arraycopy(b, off, head, headLength, len);
+                headLength += len;
+                return;
+            }
+            start();
+        }
+        out.write(b, off, len);
+    }
+
+    private void start() throws IOException {
+        wire = new CountingStream(res.getOutputStream());
+        if (gzipAccepted) {
+            res.setHeader("Content-Encoding", "gzip");
+            out = new GZIPOutputStream(wire, 8192);
+            GZIPPED.increment();
+        } else {
+            out = wire;
+        }
+        out.write(head, 0, headLength);
+    }
+
+    @Override
+    public void close() throws IOException {
+        RESPONSES.increment();
+        BYTES_RAW.add(raw);
+        if (out == null) {
+            res.setContentLength(headLength);
+            res.getOutputStream().write(head, 0, headLength);
+            BYTES_SENT.add(headLength);
+        } else {
+            out.close();
+            BYTES_SENT.add(wire.count);
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static final class CountingStream extends OutputStream {
+        private final OutputStream target;
+        long count;
+
+        CountingStream(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.tuganire.servlet;
+
+import com.google.gson.Gson;
+import com.tuganire.util.EnvConfig;
+import com.tuganire.util.Metrics;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * GET /metrics — Counters and gauges as JSON. Disabled unless METRICS_ENABLED=true.
+ */
+@WebServlet(urlPatterns = {"/metrics"})
+public class MetricsServlet extends HttpServlet {
+
+    private final boolean enabled = EnvConfig.get("METRICS_ENABLED", "false").equalsIgnoreCase("true");
+    private final Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+        if (!enabled) {
+            res.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (req.getAttribute("userId") == null) {
+            res.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+        res.setContentType("application/json");
+        res.setCharacterEncoding("UTF-8");
+        res.getWriter().write(gson.toJson(Metrics.snapshot()));
+    }
+}
@@ -1,8 +1,9 @@
 package com.tuganire.servlet;
 
-import com.google.gson.Gson;
-import com.tuganire.model.Room;
-import com.tuganire.service.ChatService;
+import com.google.gson.stream.JsonWriter;
+import com.tuganire.model.InboxEntry;
+import com.tuganire.model.InboxPage;
+import com.tuganire.service.ContentVersions;
 import com.tuganire.service.RoomService;
 
 import jakarta.servlet.ServletException;
@@ -12,51 +13,77 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 /**
- * GET /rooms — List joined rooms (JSON for SPA or forward to JSP)
+ * GET /rooms?limit=&cursor= — Inbox page: joined rooms by last activity, with last message and unread count (JSON)
  * POST /rooms — Create room
  * POST /rooms/join — Join room (via path param or body)
  */
-@WebServlet(urlPatterns = {"/rooms", "/rooms/*"})
+@WebServlet(urlPatterns = {"/rooms", "/rooms/*"}, asyncSupported = true)
 public class RoomServlet extends HttpServlet {
 
     private final RoomService roomService = new RoomService();
-    private final ChatService chatService = new ChatService();
-    private final Gson gson = new Gson();
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+        AsyncWork.run(req, res, this::handleGet);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+        AsyncWork.run(req, res, this::handlePost);
+    }
+
+    private void handleGet(HttpServletRequest req, HttpServletResponse res) throws IOException {
         Integer userId = (Integer) req.getAttribute("userId");
         if (userId == null) {
             res.sendError(HttpServletResponse.SC_UNAUTHORIZED);
             return;
         }
-        List<Room> rooms = roomService.listRoomsForUser(userId);
-        List<Map<String, Object>> payload = new ArrayList<>();
-        for (Room r : rooms) {
-            Map<String, Object> m = new HashMap<>();
-            m.put("id", r.getId());
-            m.put("name", r.getName());
-            m.put("type", r.getType().name());
-            m.put("unreadCount", chatService.countUnread(r.getId(), userId));
-            chatService.getLastMessage(r.getId()).ifPresent(msg -> {
-                m.put("lastMessage", msg.getContent());
-                m.put("lastMessageAt", msg.getCreatedAt().toString());
-            });
-            payload.add(m);
+        int limit = parseIntParam(req.getParameter("limit"), 50);
+        limit = Math.min(Math.max(limit, 1), 200);
+        InboxEntry after;
+        try {
+            after = RoomService.decodeInboxCursor(req.getParameter("cursor"));
+        } catch (IllegalArgumentException e) {
+            res.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor");
+            return;
+        }
+        if (ETags.notModified(req, res, ContentVersions.inboxTag(userId))) {
+            return;
+        }
+        InboxPage page = roomService.inbox(userId, limit, after);
+        try (JsonWriter out = JsonResponse.writer(req, res)) {
+            out.beginObject().name("rooms").beginArray();
+            for (InboxEntry r : page.rooms()) {
+                writeRoom(out, r);
+            }
+            out.endArray();
+            if (page.hasMore()) {
+                out.name("nextCursor").value(RoomService.inboxCursor(page.rooms().get(page.rooms().size() - 1)));
+            }
+            out.endObject();
         }
-        res.setContentType("application/json");
-        res.setCharacterEncoding("UTF-8");
-        res.getWriter().write(gson.toJson(payload));
     }
 
-    @Override
-    protected void doPost(HttpServletRequest req, HttpServletResponse res) throws IOException {
+    /** One inbox entry of GET /rooms; public for JsonResponseBenchmark. */
+    public static void writeRoom(JsonWriter out, InboxEntry r) throws IOException {
+        out.beginObject();
+        out.name("id").value(r.getId());
+        out.name("name").value(r.getName());
+        out.name("type").value(r.getType().name());
+        out.name("unreadCount").value(r.getUnreadCount());
+        String lastActivityAt = r.getLastActivityAt().toString();
+        out.name("lastActivityAt").value(lastActivityAt);
+        if (r.getLastMessageId() != null) {
+            out.name("lastMessageId").value(String.valueOf(r.getLastMessageId()));
+            out.name("lastMessage").value(r.getLastMessage());
+            out.name("lastMessageAt").value(lastActivityAt);
+        }
+        out.endObject();
+    }
+
+    private void handlePost(HttpServletRequest req, HttpServletResponse res) throws IOException {
         Integer userId = (Integer) req.getAttribute("userId");
         if (userId == null) {
             res.sendError(HttpServletResponse.SC_UNAUTHORIZED);
@@ -100,4 +127,13 @@ public class RoomServlet extends HttpServlet {
         }
         res.sendRedirect(req.getContextPath() + "/chat?roomId=" + roomId);
     }
+
+    private int parseIntParam(String s, int def) {
+        if (s == null || s.isBlank()) return def;
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
 }
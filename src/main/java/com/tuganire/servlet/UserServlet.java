@@ -1,6 +1,6 @@
 package com.tuganire.servlet;
 
-import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import com.tuganire.model.User;
 import com.tuganire.service.UserService;
 
@@ -11,10 +11,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * GET /users/search — Search users (for starting DM)
@@ -24,7 +21,6 @@ import java.util.Map;
 public class UserServlet extends HttpServlet {
 
     private final UserService userService = new UserService();
-    private final Gson gson = new Gson();
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
@@ -36,19 +32,19 @@ public class UserServlet extends HttpServlet {
             }
             String q = req.getParameter("q");
             List<User> users = userService.search(q != null ? q : "", 20);
-            List<Map<String, Object>> payload = new ArrayList<>();
-            for (User u : users) {
-                if (u.getId().equals(userId)) continue; // Exclude self
-                Map<String, Object> m = new HashMap<>();
-                m.put("id", u.getId());
-                m.put("username", u.getUsername());
-                m.put("avatar", u.getAvatar());
-                m.put("isOnline", u.isOnline());
-                payload.add(m);
+            try (JsonWriter out = JsonResponse.writer(req, res)) {
+                out.beginArray();
+                for (User u : users) {
+                    if (u.getId().equals(userId)) continue; // Exclude self
+                    out.beginObject();
+                    out.name("id").value(u.getId());
+                    out.name("username").value(u.getUsername());
+                    out.name("avatar").value(u.getAvatar());
+                    out.name("isOnline").value(userService.isOnline(u.getId()));
+                    out.endObject();
+                }
+                out.endArray();
             }
-            res.setContentType("application/json");
-            res.setCharacterEncoding("UTF-8");
-            res.getWriter().write(gson.toJson(payload));
         } else {
             res.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
         }
@@ -0,0 +1,82 @@
+package com.tuganire.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared scheduler for periodic in-process work (digests, write-behind flushes).
+ * Shut down by HibernateContextListener before the SessionFactory closes, so final
+ * flushes registered with {@link #onShutdown(Runnable)} can still reach the database.
+ */
+public final class BackgroundTasks {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BackgroundTasks.class);
+    private static final int THREADS = Integer.parseInt(EnvConfig.get("BACKGROUND_THREADS", "2"));
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(THREADS, daemonThreads());
+    private static final List<Runnable> SHUTDOWN_HOOKS = new CopyOnWriteArrayList<>();
+
+    private BackgroundTasks() {
+    }
+
+    /**
+     * Run a task every periodMillis. Failures are logged and do not cancel the schedule.
+     */
+    public static ScheduledFuture<?> every(String name, long periodMillis, Runnable task) {
+        return SCHEDULER.scheduleWithFixedDelay(guard(name, task), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run a task once after delayMillis.
+     */
+    public static ScheduledFuture<?> after(String name, long delayMillis, Runnable task) {
+        return SCHEDULER.schedule(guard(name, task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Register a final flush to run on shutdown, before the database goes away.
+     */
+    public static void onShutdown(Runnable hook) {
+        SHUTDOWN_HOOKS.add(hook);
+    }
+
+    public static void shutdown() {
+        SCHEDULER.shutdown();
+        try {
+            SCHEDULER.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Runnable hook : SHUTDOWN_HOOKS) {
+            guard("shutdown", hook).run();
+        }
+    }
+
+    private static Runnable guard(String name, Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.warn("Background task '{}' failed", name, e);
+            }
+        };
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "tuganire-bg-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
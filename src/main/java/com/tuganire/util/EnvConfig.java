@@ -46,12 +46,17 @@ public final class EnvConfig {
     }
 
     /**
-     * Get config value: first from .env, then from system environment.
+     * Get config value: first from a JVM system property of the same name (-DKEY=value, used by
+     * tests and benchmarks), then from .env, then from system environment.
      *
      * @param key The configuration key (e.g. "DB_URL", "JWT_SECRET")
      * @return Optional containing the value, or empty if not found
      */
     public static Optional<String> get(String key) {
+        String prop = System.getProperty(key);
+        if (prop != null && !prop.isBlank()) {
+            return Optional.of(prop.trim());
+        }
         if (dotenv != null) {
             String val = dotenv.get(key);
             if (val != null && !val.isBlank()) {
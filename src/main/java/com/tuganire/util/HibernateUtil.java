@@ -1,21 +1,39 @@
 package com.tuganire.util;
 
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.tuganire.model.CacheRegions;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.Metadata;
 import org.hibernate.boot.MetadataSources;
 import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cache.jcache.ConfigSettings;
 import org.hibernate.cfg.Environment;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
 
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Hibernate SessionFactory singleton. Uses HikariCP and reads config from EnvConfig.
+ *
+ * <p>User and Room are kept in a second-level cache (JCache, in-process Caffeine), each region
+ * with its own size cap and time-to-live. Each node caches on its own, so the TTL bounds how
+ * long a change made on another node can go unseen; HIBERNATE_L2_CACHE=false turns it off.
+ * Hibernate statistics are published as {@code hibernate.*} metrics.
  */
 public final class HibernateUtil {
 
     private static volatile SessionFactory sessionFactory;
+    private static CacheManager cacheManager;
 
     private HibernateUtil() {
     }
@@ -35,12 +53,24 @@ public final class HibernateUtil {
         Map<String, Object> settings = new HashMap<>();
 
         // Connection - from .env
-        settings.put(Environment.DATASOURCE, createHikariDataSource());
+        com.zaxxer.hikari.HikariDataSource pool = createHikariDataSource();
+        settings.put(Environment.DATASOURCE, WorkDispatcher.limitConnections(pool, pool.getConnectionTimeout()));
         settings.put(Environment.DIALECT, "org.hibernate.dialect.PostgreSQLDialect");
         settings.put(Environment.SHOW_SQL, EnvConfig.get("HIBERNATE_SHOW_SQL", "false").equalsIgnoreCase("true"));
         settings.put(Environment.HBM2DDL_AUTO, EnvConfig.get("HIBERNATE_HBM2DDL_AUTO", "update"));
         settings.put(Environment.FORMAT_SQL, true);
 
+        // Second-level cache for User and Room
+        boolean l2 = EnvConfig.get("HIBERNATE_L2_CACHE", "true").equalsIgnoreCase("true");
+        settings.put(Environment.USE_SECOND_LEVEL_CACHE, l2);
+        if (l2) {
+            settings.put(Environment.CACHE_REGION_FACTORY, "jcache");
+            settings.put(ConfigSettings.CACHE_MANAGER, createCacheManager());
+        }
+        settings.put(Environment.GENERATE_STATISTICS, true);
+        // statistics feed /metrics; without this Hibernate also logs a summary at INFO for every session
+        settings.put(Environment.LOG_SESSION_METRICS, false);
+
         StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
                 .applySettings(settings)
                 .build();
@@ -55,21 +85,79 @@ public final class HibernateUtil {
 
         try {
             Metadata metadata = sources.getMetadataBuilder().build();
-            return metadata.getSessionFactoryBuilder().build();
+            SessionFactory factory = metadata.getSessionFactoryBuilder().build();
+            registerMetrics(factory.getStatistics(), l2);
+            return factory;
         } catch (Exception e) {
             StandardServiceRegistryBuilder.destroy(registry);
             throw new RuntimeException("Failed to build Hibernate SessionFactory", e);
         }
     }
 
+    /**
+     * A cache region for lookups Hibernate does not cache itself, or null when the second-level
+     * cache is off.
+     */
+    public static Cache<Object, Object> region(String name) {
+        getSessionFactory(); // creates the regions
+        return cacheManager != null ? cacheManager.getCache(name) : null;
+    }
+
+    private static CacheManager createCacheManager() {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        cacheManager = provider.getCacheManager(provider.getDefaultURI(), HibernateUtil.class.getClassLoader());
+        createCache(CacheRegions.USERS, "USER_CACHE_MAX", "10000", "USER_CACHE_TTL_SECONDS", "300");
+        createCache(CacheRegions.USERS_BY_USERNAME, "USER_CACHE_MAX", "10000", "USER_CACHE_TTL_SECONDS", "300");
+        createCache(CacheRegions.USERS_BY_EMAIL, "USER_CACHE_MAX", "10000", "USER_CACHE_TTL_SECONDS", "300");
+        createCache(CacheRegions.ROOMS, "ROOM_CACHE_MAX", "10000", "ROOM_CACHE_TTL_SECONDS", "600");
+        return cacheManager;
+    }
+
+    private static void createCache(String region, String maxKey, String maxDefault, String ttlKey, String ttlDefault) {
+        if (cacheManager.getCache(region) != null) {
+            return; // webapp redeployed in the same JVM
+        }
+        CaffeineConfiguration<Object, Object> config = new CaffeineConfiguration<>();
+        config.setMaximumSize(OptionalLong.of(Long.parseLong(EnvConfig.get(maxKey, maxDefault))));
+        config.setExpireAfterWrite(OptionalLong.of(
+                TimeUnit.SECONDS.toNanos(Long.parseLong(EnvConfig.get(ttlKey, ttlDefault)))));
+        // Hibernate's cache entries are immutable: no need to copy them in and out
+        config.setStoreByValue(false);
+        cacheManager.createCache(region, config);
+    }
+
+    private static void registerMetrics(Statistics stats, boolean l2) {
+        Metrics.gauge("hibernate.queries", stats::getPrepareStatementCount);
+        Metrics.gauge("hibernate.l2.hits", stats::getSecondLevelCacheHitCount);
+        Metrics.gauge("hibernate.l2.misses", stats::getSecondLevelCacheMissCount);
+        Metrics.gauge("hibernate.l2.puts", stats::getSecondLevelCachePutCount);
+        Metrics.gauge("hibernate.naturalId.hits", stats::getNaturalIdCacheHitCount);
+        Metrics.gauge("hibernate.naturalId.misses", stats::getNaturalIdCacheMissCount);
+        if (!l2) {
+            return; // regions only exist with the cache on
+        }
+        for (String region : new String[]{CacheRegions.USERS, CacheRegions.USERS_BY_USERNAME, CacheRegions.ROOMS}) {
+            Metrics.gauge("hibernate.l2." + region + ".hits", () -> {
+                CacheRegionStatistics r = stats.getDomainDataRegionStatistics(region);
+                return r != null ? r.getHitCount() : 0;
+            });
+            Metrics.gauge("hibernate.l2." + region + ".misses", () -> {
+                CacheRegionStatistics r = stats.getDomainDataRegionStatistics(region);
+                return r != null ? r.getMissCount() : 0;
+            });
+        }
+    }
+
     private static com.zaxxer.hikari.HikariDataSource createHikariDataSource() {
         com.zaxxer.hikari.HikariDataSource ds = new com.zaxxer.hikari.HikariDataSource();
         ds.setJdbcUrl(EnvConfig.getRequired("DB_URL"));
         ds.setUsername(EnvConfig.getRequired("DB_USERNAME"));
         ds.setPassword(EnvConfig.getRequired("DB_PASSWORD"));
-        ds.setDriverClassName("org.postgresql.Driver");
-        ds.setMaximumPoolSize(10);
+        ds.setDriverClassName(EnvConfig.get("DB_DRIVER", "org.postgresql.Driver")); // tests wrap it to count statements
+        ds.setMaximumPoolSize(Integer.parseInt(EnvConfig.get("DB_POOL_SIZE", "10")));
         ds.setMinimumIdle(2);
+        // Send JDBC batches of single-row INSERTs as multi-row INSERTs
+        ds.addDataSourceProperty("reWriteBatchedInserts", "true");
         return ds;
     }
 
@@ -78,5 +166,9 @@ public final class HibernateUtil {
             sessionFactory.close();
             sessionFactory = null;
         }
+        if (cacheManager != null) {
+            cacheManager.close();
+            cacheManager = null;
+        }
     }
 }
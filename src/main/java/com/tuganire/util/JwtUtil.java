@@ -1,59 +1,112 @@
 package com.tuganire.util;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.tuganire.model.TokenClaims;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * JWT sign and verify helpers. Uses HS256. Token stored in httpOnly cookie.
+ *
+ * <p>The secret is read and the algorithm and verifier are built once. Verified tokens are
+ * remembered (keyed by their SHA-256 digest, up to JWT_CACHE_MAX) until they expire, so a
+ * user's repeated requests skip both the HMAC and the JSON decoding.
  */
 public final class JwtUtil {
 
     private static final String CLAIM_USER_ID = "userId";
     private static final String CLAIM_USERNAME = "username";
 
+    private static final long EXPIRY_SECONDS = Integer.parseInt(EnvConfig.get("JWT_EXPIRY_HOURS", "24")) * 3600L;
+    private static final int CACHE_MAX = Integer.parseInt(EnvConfig.get("JWT_CACHE_MAX", "10000"));
+
+    private static final LongAdder HITS = Metrics.counter("auth.tokenCache.hits");
+    private static final LongAdder MISSES = Metrics.counter("auth.tokenCache.misses");
+
+    private static final Map<ByteBuffer, TokenClaims> VERIFIED = new ConcurrentHashMap<>();
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    static {
+        Metrics.gauge("auth.tokenCache.size", VERIFIED::size);
+        BackgroundTasks.every("jwt-cache-sweep", 60_000, JwtUtil::sweep);
+    }
+
     private JwtUtil() {
     }
 
+    /** Built on first use, so a missing JWT_SECRET fails the call, as before, not class loading. */
+    private static final class Keys {
+        static final Algorithm ALGORITHM = Algorithm.HMAC256(EnvConfig.getRequired("JWT_SECRET"));
+        static final JWTVerifier VERIFIER = JWT.require(ALGORITHM).build();
+    }
+
     /**
      * Generate a signed JWT containing userId and username.
      */
     public static String createToken(int userId, String username) {
-        int expiryHours = Integer.parseInt(EnvConfig.get("JWT_EXPIRY_HOURS", "24"));
-        Instant expiresAt = Instant.now().plusSeconds(expiryHours * 3600L);
+        Instant expiresAt = Instant.now().plusSeconds(EXPIRY_SECONDS);
 
         return JWT.create()
                 .withClaim(CLAIM_USER_ID, userId)
                 .withClaim(CLAIM_USERNAME, username)
                 .withExpiresAt(Date.from(expiresAt))
-                .sign(Algorithm.HMAC256(EnvConfig.getRequired("JWT_SECRET")));
+                .sign(Keys.ALGORITHM);
     }
 
     /**
      * Verify and decode token. Returns null if invalid or expired.
      */
-    public static DecodedJWT verify(String token) {
+    public static TokenClaims verify(String token) {
         if (token == null || token.isBlank()) {
             return null;
         }
+        ByteBuffer key = ByteBuffer.wrap(SHA256.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+        TokenClaims cached = VERIFIED.get(key);
+        if (cached != null) {
+            if (System.currentTimeMillis() < cached.expiresAtMillis()) {
+                HITS.increment();
+                return cached;
+            }
+            VERIFIED.remove(key);
+            return null;
+        }
+        MISSES.increment();
+        DecodedJWT jwt;
         try {
-            return JWT.require(Algorithm.HMAC256(EnvConfig.getRequired("JWT_SECRET")))
-                    .build()
-                    .verify(token);
+            jwt = Keys.VERIFIER.verify(token);
         } catch (JWTVerificationException e) {
             return null;
         }
+        Date expiresAt = jwt.getExpiresAt();
+        TokenClaims claims = new TokenClaims(jwt.getClaim(CLAIM_USER_ID).asInt(),
+                jwt.getClaim(CLAIM_USERNAME).asString(),
+                expiresAt != null ? expiresAt.getTime() : Long.MAX_VALUE);
+        if (expiresAt != null && VERIFIED.size() < CACHE_MAX) {
+            VERIFIED.put(key, claims); // when full, tokens are just verified each time until the sweep
+        }
+        return claims;
     }
 
-    public static int getUserId(DecodedJWT jwt) {
-        return jwt.getClaim(CLAIM_USER_ID).asInt();
-    }
-
-    public static String getUsername(DecodedJWT jwt) {
-        return jwt.getClaim(CLAIM_USERNAME).asString();
+    private static void sweep() {
+        long now = System.currentTimeMillis();
+        VERIFIED.values().removeIf(c -> c.expiresAtMillis() <= now);
     }
 }
@@ -0,0 +1,50 @@
+package com.tuganire.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide registry of named counters and gauges. Served as JSON by MetricsServlet.
+ */
+public final class Metrics {
+
+    private static final Map<String, LongSupplier> METRICS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Get or create a monotonically increasing counter: every caller asking for the same name
+     * shares one. Throws IllegalStateException if the name is already taken by a gauge.
+     */
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> {
+            LongAdder adder = new LongAdder();
+            if (METRICS.putIfAbsent(n, adder::sum) != null) {
+                throw new IllegalStateException("Metric already registered as a gauge: " + n);
+            }
+            return adder;
+        });
+    }
+
+    /**
+     * Register a gauge read on demand (queue depth, cache size, ...).
+     */
+    public static void gauge(String name, LongSupplier supplier) {
+        METRICS.put(name, supplier);
+    }
+
+    /**
+     * Current value of every metric, sorted by name.
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        METRICS.forEach((name, supplier) -> out.put(name, supplier.getAsLong()));
+        return out;
+    }
+}
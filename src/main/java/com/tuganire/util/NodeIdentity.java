@@ -0,0 +1,24 @@
+package com.tuganire.util;
+
+import java.security.SecureRandom;
+
+/**
+ * Identity of this application node. NODE_ID is the stable, operator-assigned number of the
+ * node in the cluster; the instance id additionally distinguishes restarts of the same node.
+ */
+public final class NodeIdentity {
+
+    private static final int NODE_ID = Integer.parseInt(EnvConfig.get("NODE_ID", "0"));
+    private static final String INSTANCE_ID = NODE_ID + "-" + Long.toHexString(new SecureRandom().nextLong() >>> 16);
+
+    private NodeIdentity() {
+    }
+
+    public static int nodeId() {
+        return NODE_ID;
+    }
+
+    public static String instanceId() {
+        return INSTANCE_ID;
+    }
+}
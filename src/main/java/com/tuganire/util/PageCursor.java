@@ -0,0 +1,53 @@
+package com.tuganire.util;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Opaque pagination cursors. A cursor wraps the sort key the next page starts after (a message
+ * id, or an inbox's activity time and room id), so clients cannot depend on its format and the
+ * server can change it later.
+ */
+public final class PageCursor {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private PageCursor() {
+    }
+
+    public static String encode(long... parts) {
+        ByteBuffer buf = ByteBuffer.allocate(Long.BYTES * parts.length);
+        for (long p : parts) {
+            buf.putLong(p);
+        }
+        return ENCODER.encodeToString(buf.array());
+    }
+
+    /**
+     * Decode a single-id cursor; returns null for a missing one and throws IllegalArgumentException for a malformed one.
+     */
+    public static Long decode(String cursor) {
+        long[] parts = decode(cursor, 1);
+        return parts != null ? parts[0] : null;
+    }
+
+    /**
+     * Decode a cursor of the given number of parts; null for a missing one, IllegalArgumentException if malformed.
+     */
+    public static long[] decode(String cursor, int count) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        byte[] bytes = DECODER.decode(cursor);
+        if (bytes.length != Long.BYTES * count) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        long[] parts = new long[count];
+        for (int i = 0; i < count; i++) {
+            parts[i] = buf.getLong();
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,175 @@
+package com.tuganire.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token-bucket admission control for WebSocket frames and REST routes.
+ *
+ * <p>Each bucket is a single AtomicLong holding its "theoretical arrival time" (GCRA), updated
+ * with CAS, so checks never lock. Keyed buckets (per user and rule) live in striped maps with
+ * a per-stripe size cap. A bucket whose arrival time has passed is indistinguishable from a
+ * full one, so idle buckets are evicted periodically without changing any limit.
+ *
+ * <p>Limits are configured as {@code RATE_<RULE>=burst/perSecond}, e.g. RATE_MESSAGE=20/5.
+ */
+public final class RateLimiter {
+
+    public enum Rule {
+        /** Every frame on one WebSocket connection. */
+        WS_CONNECTION("60/20"),
+        MESSAGE("20/5"),
+        TYPING("10/2"),
+        SEEN("30/10"),
+        REACTION("20/5"),
+        HTTP_MESSAGES("30/10"),
+        HTTP_ROOMS("20/5"),
+        HTTP_USER_SEARCH("10/2");
+
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final LongAdder rejected;
+
+        Rule(String defaults) {
+            String[] spec = EnvConfig.get("RATE_" + name(), defaults).split("/");
+            long burst = Math.max(1, Long.parseLong(spec[0].trim()));
+            double perSecond = Double.parseDouble(spec[1].trim());
+            this.intervalNanos = (long) (1_000_000_000L / perSecond);
+            this.toleranceNanos = intervalNanos * burst;
+            this.rejected = Metrics.counter("rate.rejected." + name());
+        }
+
+        /** Seconds until one more token is available, for Retry-After. */
+        public long retryAfterSeconds() {
+            return Math.max(1, (intervalNanos + 999_999_999L) / 1_000_000_000L);
+        }
+    }
+
+    private static final Map<String, Rule> FRAME_RULES = Map.of(
+            "MESSAGE", Rule.MESSAGE,
+            "TYPING", Rule.TYPING,
+            "SEEN", Rule.SEEN,
+            "REACTION", Rule.REACTION);
+
+    private static final Map<String, Rule> PATH_RULES = Map.of(
+            "/messages", Rule.HTTP_MESSAGES,
+            "/rooms", Rule.HTTP_ROOMS,
+            "/users/search", Rule.HTTP_USER_SEARCH);
+
+    private static final int STRIPES = 16;
+    private static final int MAX_PER_STRIPE =
+            Math.max(1, Integer.parseInt(EnvConfig.get("RATE_MAX_BUCKETS", "100000")) / STRIPES);
+    private static final long EVICT_MS = Long.parseLong(EnvConfig.get("RATE_EVICT_INTERVAL_MS", "30000"));
+
+    private static final List<Map<Long, Bucket>> BUCKETS = stripes();
+
+    private static final LongAdder UNTRACKED = Metrics.counter("rate.untracked");
+    private static final LongAdder EVICTED = Metrics.counter("rate.evicted");
+
+    static {
+        Metrics.gauge("rate.buckets", () -> {
+            long n = 0;
+            for (Map<Long, Bucket> stripe : BUCKETS) n += stripe.size();
+            return n;
+        });
+        BackgroundTasks.every("rate-evict", EVICT_MS, () -> {
+            for (Map<Long, Bucket> stripe : BUCKETS) evictIdle(stripe);
+        });
+    }
+
+    /**
+     * One token bucket. Held directly by its owner (e.g. a WebSocket connection) or by the
+     * keyed maps for per-user limits.
+     */
+    public static final class Bucket {
+        private final Rule rule;
+        private final AtomicLong arrival = new AtomicLong(Long.MIN_VALUE);
+
+        public Bucket(Rule rule) {
+            this.rule = rule;
+        }
+
+        public boolean tryAcquire() {
+            while (true) {
+                long now = System.nanoTime();
+                long tat = arrival.get();
+                long next = (tat == Long.MIN_VALUE || tat - now < 0 ? now : tat) + rule.intervalNanos;
+                if (next - now > rule.toleranceNanos) {
+                    rule.rejected.increment();
+                    return false;
+                }
+                if (arrival.compareAndSet(tat, next)) {
+                    return true;
+                }
+            }
+        }
+
+        boolean isIdle(long now) {
+            long tat = arrival.get();
+            return tat == Long.MIN_VALUE || tat - now <= 0;
+        }
+    }
+
+    private RateLimiter() {
+    }
+
+    /** Rule for a WebSocket frame type, or null if the type is not limited on its own. */
+    public static Rule forFrame(String type) {
+        return FRAME_RULES.get(type);
+    }
+
+    /** Rule for a request path (e.g. /rooms/12/join counts against /rooms), or null. */
+    public static Rule forPath(String path) {
+        int second = path.indexOf('/', 1);
+        return PATH_RULES.getOrDefault(path, second > 0 ? PATH_RULES.get(path.substring(0, second)) : null);
+    }
+
+    /**
+     * Take a token from the user's bucket for the rule. Returns false if the request should be rejected.
+     */
+    public static boolean tryAcquire(Rule rule, int userId) {
+        long key = ((long) rule.ordinal() << 32) | (userId & 0xFFFFFFFFL);
+        Map<Long, Bucket> stripe = BUCKETS.get((int) (mix(key) & (STRIPES - 1)));
+        Bucket bucket = stripe.get(key);
+        if (bucket == null) {
+            if (stripe.size() >= MAX_PER_STRIPE) {
+                evictIdle(stripe);
+                if (stripe.size() >= MAX_PER_STRIPE) {
+                    UNTRACKED.increment(); // fail open rather than grow without bound
+                    return true;
+                }
+            }
+            bucket = stripe.computeIfAbsent(key, k -> new Bucket(rule));
+        }
+        return bucket.tryAcquire();
+    }
+
+    private static List<Map<Long, Bucket>> stripes() {
+        List<Map<Long, Bucket>> stripes = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new ConcurrentHashMap<>());
+        }
+        return List.copyOf(stripes);
+    }
+
+    private static void evictIdle(Map<Long, Bucket> stripe) {
+        long now = System.nanoTime();
+        for (Iterator<Bucket> it = stripe.values().iterator(); it.hasNext(); ) {
+            if (it.next().isIdle(now)) {
+                it.remove();
+                EVICTED.increment();
+            }
+        }
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        return key ^ (key >>> 33);
+    }
+}
@@ -0,0 +1,59 @@
+package com.tuganire.util;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered 64-bit ids generated in-process (Snowflake layout):
+ * 41 bits of milliseconds since 2024-01-01, 10 bits of NODE_ID, 12 bits of per-millisecond sequence.
+ *
+ * <p>Generation is a CAS loop on the last issued id, so it never locks. When more than 4096
+ * ids are needed in one millisecond, or the clock steps backwards, the generator keeps counting
+ * from the last issued timestamp, so ids from one node are strictly increasing.
+ */
+public final class SnowflakeId {
+
+    private static final long EPOCH_MS = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final long NODE;
+    private static final AtomicLong LAST = new AtomicLong();
+
+    static {
+        int node = NodeIdentity.nodeId();
+        if (node < 0 || node >= (1 << NODE_BITS)) {
+            throw new IllegalStateException("NODE_ID must be between 0 and " + ((1 << NODE_BITS) - 1) + ": " + node);
+        }
+        NODE = (long) node << SEQUENCE_BITS;
+    }
+
+    private SnowflakeId() {
+    }
+
+    public static long next() {
+        while (true) {
+            long last = LAST.get();
+            long now = System.currentTimeMillis() - EPOCH_MS;
+            long lastTs = last >>> TIMESTAMP_SHIFT;
+            long next;
+            if (now > lastTs) {
+                next = (now << TIMESTAMP_SHIFT) | NODE;
+            } else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = last + 1;
+            } else {
+                next = ((lastTs + 1) << TIMESTAMP_SHIFT) | NODE; // borrow the next millisecond
+            }
+            if (LAST.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    /** When the id was generated (to the millisecond). */
+    public static Instant timestampOf(long id) {
+        return Instant.ofEpochMilli((id >>> TIMESTAMP_SHIFT) + EPOCH_MS);
+    }
+}
@@ -0,0 +1,76 @@
+package com.tuganire.util;
+
+/**
+ * Normalizes user-supplied text before it is stored: trim, HTML-escape, check length.
+ * Escaping is one pass over the string and returns the input itself when there is nothing to
+ * escape, so typical text is not copied at all.
+ */
+public final class TextSanitizer {
+
+    private TextSanitizer() {
+    }
+
+    /**
+     * Escape {@code < > " '} as HTML entities. Returns {@code s} unchanged if none occur.
+     */
+    public static String escapeHtml(String s) {
+        int n = s.length();
+        int i = 0;
+        while (i < n && entity(s.charAt(i)) == null) {
+            i++;
+        }
+        if (i == n) {
+            return s;
+        }
+        // size the result exactly, so markup-heavy text is not copied again as the builder grows
+        int extra = 0;
+        for (int j = i; j < n; j++) {
+            String e = entity(s.charAt(j));
+            if (e != null) {
+                extra += e.length() - 1;
+            }
+        }
+        StringBuilder sb = new StringBuilder(n + extra);
+        sb.append(s, 0, i);
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            String e = entity(c);
+            if (e != null) {
+                sb.append(e);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Trim and escape {@code s}. Returns null if it is null, blank, or longer than
+     * maxCodePoints once escaped (what a varchar(maxCodePoints) column can hold).
+     */
+    public static String clean(String s, int maxCodePoints) {
+        if (s == null) {
+            return null;
+        }
+        String t = s.trim();
+        if (t.isEmpty()) {
+            return null;
+        }
+        String escaped = escapeHtml(t);
+        // chars >= code points, so only long strings need counting
+        if (escaped.length() > maxCodePoints && escaped.codePointCount(0, escaped.length()) > maxCodePoints) {
+            return null;
+        }
+        return escaped;
+    }
+
+    private static String entity(char c) {
+        return switch (c) {
+            case '<' -> "&lt;";
+            case '>' -> "&gt;";
+            case '"' -> "&quot;";
+            case '\'' -> "&#39;";
+            default -> null;
+        };
+    }
+}
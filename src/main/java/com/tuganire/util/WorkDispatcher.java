@@ -0,0 +1,141 @@
+package com.tuganire.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional off-container execution for blocking request work (EXECUTION_MODE=virtual).
+ *
+ * <p>In "container" mode (the default) handlers run on Tomcat's threads as before. In "virtual"
+ * mode WebSocket frames and servlet requests are handed to virtual threads (Java 21+; on older
+ * runtimes a platform pool of DISPATCH_THREADS is used instead). Dispatched tasks themselves are
+ * not throttled: JSP rendering, 304s, cache hits and in-memory frames run at once. The limit sits
+ * in front of the connection pool instead (see {@link #limitConnections}): a connection is only
+ * handed out with a permit from a semaphore sized DB_CONCURRENCY_LIMIT, held until it is closed,
+ * so at most that many callers compete for Hikari and the rest wait in a fair queue.
+ */
+public final class WorkDispatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WorkDispatcher.class);
+
+    private static final boolean ENABLED = EnvConfig.get("EXECUTION_MODE", "container").equalsIgnoreCase("virtual");
+    private static final int DB_CONCURRENCY = Integer.parseInt(
+            EnvConfig.get("DB_CONCURRENCY_LIMIT", EnvConfig.get("DB_POOL_SIZE", "10")));
+    private static final Semaphore DB_PERMITS = new Semaphore(DB_CONCURRENCY, true);
+
+    private static final LongAdder DISPATCHED = Metrics.counter("dispatch.tasks");
+    private static final AtomicInteger WAITING = new AtomicInteger();
+
+    private static final ExecutorService EXECUTOR = ENABLED ? createExecutor() : null;
+
+    static {
+        Metrics.gauge("dispatch.waitingForDbPermit", WAITING::get);
+        Metrics.gauge("dispatch.dbPermitsInUse", () -> DB_CONCURRENCY - DB_PERMITS.availablePermits());
+    }
+
+    private WorkDispatcher() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Run a task on the dispatcher.
+     */
+    public static void submit(Runnable task) {
+        DISPATCHED.increment();
+        EXECUTOR.execute(task);
+    }
+
+    /**
+     * The data source Hibernate should use: in virtual mode each connection taken from it holds a
+     * DB permit until closed, waiting up to timeoutMs for one; in container mode ds itself, since
+     * Tomcat's thread pool already bounds the callers.
+     */
+    public static DataSource limitConnections(DataSource ds, long timeoutMs) {
+        return ENABLED ? new PermitDataSource(ds, DB_PERMITS, WAITING, timeoutMs) : ds;
+    }
+
+    /**
+     * An executor that runs its tasks one at a time, in submission order, on the dispatcher.
+     * Used per WebSocket session so frames from one client are handled in order.
+     */
+    public static Executor serial() {
+        return new SerialExecutor();
+    }
+
+    public static void shutdown() {
+        if (EXECUTOR != null) {
+            EXECUTOR.shutdown();
+            try {
+                EXECUTOR.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Integer.parseInt(EnvConfig.get("DISPATCH_THREADS", "64"));
+            LOG.warn("Virtual threads need Java 21+; dispatching to {} platform threads instead", threads);
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "tuganire-dispatch-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private static final class SerialExecutor implements Executor {
+        // Guarded by this
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean running;
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (this) {
+                tasks.add(task);
+                if (running) {
+                    return;
+                }
+                running = true;
+            }
+            submit(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                Runnable next;
+                synchronized (this) {
+                    next = tasks.poll();
+                    if (next == null) {
+                        running = false;
+                        return;
+                    }
+                }
+                try {
+                    next.run();
+                } catch (RuntimeException e) {
+                    LOG.warn("Dispatched task failed", e);
+                }
+            }
+        }
+    }
+}
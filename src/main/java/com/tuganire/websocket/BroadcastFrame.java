@@ -0,0 +1,81 @@
+package com.tuganire.websocket;
+
+import com.google.gson.JsonObject;
+import com.tuganire.util.Metrics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An outbound event serialized and UTF-8 encoded exactly once. The same immutable instance is
+ * queued on every recipient's SessionOutbox and sent as a binary frame over a read-only view of
+ * its bytes, so fan-out to N sessions costs one encode, not N: the container has no text left to
+ * encode per recipient. chat.js decodes binary frames as UTF-8 JSON.
+ *
+ * <p>{@code ws.frames.encoded} and {@code ws.frames.encodedBytes} count encodes;
+ * {@code ws.frames.recipients} counts the sends that reuse them.
+ */
+public final class BroadcastFrame {
+
+    private static final LongAdder ENCODED = Metrics.counter("ws.frames.encoded");
+    private static final LongAdder ENCODED_BYTES = Metrics.counter("ws.frames.encodedBytes");
+    private static final LongAdder RECIPIENTS = Metrics.counter("ws.frames.recipients");
+
+    private final String text;
+    private final ByteBuffer bytes;
+    private final boolean ephemeral;
+
+    private BroadcastFrame(String text, boolean ephemeral) {
+        this.text = text;
+        this.bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        this.ephemeral = ephemeral;
+        ENCODED.increment();
+        ENCODED_BYTES.add(bytes.remaining());
+    }
+
+    /**
+     * Durable frame (messages, reactions): never dropped for slow consumers.
+     */
+    public static BroadcastFrame durable(JsonObject payload) {
+        return new BroadcastFrame(payload.toString(), false);
+    }
+
+    /**
+     * Ephemeral frame (typing, receipts, presence): may be dropped under back-pressure.
+     */
+    public static BroadcastFrame ephemeral(JsonObject payload) {
+        return new BroadcastFrame(payload.toString(), true);
+    }
+
+    /**
+     * Wrap already-encoded text, e.g. a frame received from another node.
+     */
+    static BroadcastFrame ofText(String text, boolean ephemeral) {
+        return new BroadcastFrame(text, ephemeral);
+    }
+
+    /** The JSON text, for publishing to other nodes. */
+    public String text() {
+        return text;
+    }
+
+    /** A view of the encoded bytes for one send: its own position, shared read-only content. */
+    ByteBuffer payload() {
+        return bytes.duplicate();
+    }
+
+    /** Encoded UTF-8 size, used for outbox byte accounting. */
+    public int byteLength() {
+        return bytes.capacity();
+    }
+
+    public boolean isEphemeral() {
+        return ephemeral;
+    }
+
+    /** Called once per recipient the frame is queued for. */
+    void countRecipient() {
+        RECIPIENTS.increment();
+    }
+}
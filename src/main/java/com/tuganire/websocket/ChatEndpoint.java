@@ -2,38 +2,47 @@ package com.tuganire.websocket;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
-import com.tuganire.model.Message;
-import com.tuganire.model.User;
+import com.tuganire.model.NewMessage;
+import com.tuganire.model.ReadWatermark;
 import com.tuganire.service.ChatService;
+import com.tuganire.service.PresenceService;
+import com.tuganire.service.ReadReceiptBuffer;
 import com.tuganire.service.RoomService;
-import com.tuganire.service.UserService;
+import com.tuganire.util.RateLimiter;
+import com.tuganire.util.WorkDispatcher;
 
 import jakarta.websocket.*;
 import jakarta.websocket.server.ServerEndpoint;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
 
 /**
  * WebSocket endpoint for real-time chat. JWT auth via HttpSessionConfigurator.
- * Maps userId -> Session for broadcasting.
+ * Live sessions are indexed by room in RoomSessionRegistry for broadcasting.
+ * Inbound frames are rate limited per connection and per user and type; rejected frames
+ * get an ERROR frame back instead of being processed.
  */
 @ServerEndpoint(value = "/ws/chat", configurator = HttpSessionConfigurator.class)
 public class ChatEndpoint {
 
-    private static final Map<Integer, Session> USER_SESSIONS = new ConcurrentHashMap<>();
     private static final Gson GSON = new Gson();
 
+    static {
+        ReadReceiptBuffer.onFlushed(ChatEndpoint::broadcastSeen);
+    }
+
     private final ChatService chatService = new ChatService();
-    private final UserService userService = new UserService();
     private final RoomService roomService = new RoomService();
 
     private int userId;
     private String username;
+    private SessionOutbox outbox;
+    /** Per-session ordered dispatch when EXECUTION_MODE=virtual; null runs frames on the container thread. */
+    private final Executor inbound = WorkDispatcher.isEnabled() ? WorkDispatcher.serial() : null;
+    private final RateLimiter.Bucket frameBudget = new RateLimiter.Bucket(RateLimiter.Rule.WS_CONNECTION);
 
     @OnOpen
     public void onOpen(Session session, EndpointConfig config) {
@@ -49,30 +58,61 @@ public class ChatEndpoint {
         }
         this.userId = uid;
         this.username = uname;
-        USER_SESSIONS.put(userId, session);
-        userService.setOnline(userId, true);
-        broadcastUserStatus(userId, username, true);
+        this.outbox = new SessionOutbox(session, uid);
+        RoomSessionRegistry.register(outbox, roomService.listRoomIdsForUser(userId));
+        if (PresenceService.connect(userId)) {
+            PresenceBroadcaster.online(userId, username);
+        }
     }
 
     @OnClose
     public void onClose(Session session) {
-        USER_SESSIONS.remove(userId);
-        userService.setOnline(userId, false);
-        broadcastUserStatus(userId, username, false);
+        disconnect(session);
     }
 
     @OnError
     public void onError(Session session, Throwable t) {
-        USER_SESSIONS.remove(userId);
-        userService.setOnline(userId, false);
-        broadcastUserStatus(userId, username, false);
+        disconnect(session);
+    }
+
+    private void disconnect(Session session) {
+        if (outbox == null) {
+            return; // rejected in onOpen
+        }
+        Set<Integer> rooms = RoomSessionRegistry.roomsOf(userId);
+        if (!RoomSessionRegistry.unregister(outbox)) {
+            return; // already handled by onError/onClose
+        }
+        if (PresenceService.disconnect(userId)) {
+            PresenceBroadcaster.offline(userId, username, rooms);
+        }
     }
 
     @OnMessage
     public void onMessage(Session session, String text) {
+        if (outbox == null) {
+            return;
+        }
+        if (!frameBudget.tryAcquire()) {
+            rejectFrame(null, RateLimiter.Rule.WS_CONNECTION);
+            return;
+        }
+        if (inbound != null) {
+            inbound.execute(() -> handleFrame(text));
+        } else {
+            handleFrame(text);
+        }
+    }
+
+    private void handleFrame(String text) {
         try {
             JsonObject obj = GSON.fromJson(text, JsonObject.class);
             String type = obj.has("type") ? obj.get("type").getAsString() : "";
+            RateLimiter.Rule rule = RateLimiter.forFrame(type);
+            if (rule != null && !RateLimiter.tryAcquire(rule, userId)) {
+                rejectFrame(type, rule);
+                return;
+            }
             switch (type) {
                 case "MESSAGE" -> handleMessage(obj);
                 case "TYPING" -> handleTyping(obj);
@@ -89,50 +129,43 @@ public class ChatEndpoint {
     private void handleMessage(JsonObject obj) {
         int roomId = obj.get("roomId").getAsInt();
         String content = obj.has("content") ? obj.get("content").getAsString() : "";
-        Integer replyToId = obj.has("replyToId") && !obj.get("replyToId").isJsonNull()
-                ? obj.get("replyToId").getAsInt() : null;
-        var msgOpt = chatService.sendMessage(roomId, userId, content, replyToId);
+        Long replyToId = obj.has("replyToId") && !obj.get("replyToId").isJsonNull()
+                ? obj.get("replyToId").getAsLong() : null;
+        var msgOpt = chatService.sendMessage(roomId, userId, username, content, replyToId);
         if (msgOpt.isPresent()) {
-            Message m = msgOpt.get();
+            ClusterFanout.typing(roomId, userId, username, false);
+            NewMessage m = msgOpt.get();
             JsonObject payload = new JsonObject();
             payload.addProperty("type", "MESSAGE");
-            payload.addProperty("id", m.getId());
+            payload.addProperty("id", String.valueOf(m.id()));
             payload.addProperty("roomId", roomId);
             payload.addProperty("senderId", userId);
             payload.addProperty("senderUsername", username);
-            payload.addProperty("content", m.getContent());
-            payload.addProperty("replyToId", replyToId != null ? replyToId : 0);
-            payload.addProperty("createdAt", m.getCreatedAt().toString());
-            broadcastToRoom(roomId, payload.toString(), userId);
+            payload.addProperty("content", m.content());
+            payload.addProperty("replyToId", m.replyToId() != null ? String.valueOf(m.replyToId()) : null);
+            payload.addProperty("createdAt", m.createdAt().toString());
+            broadcastToRoom(roomId, BroadcastFrame.durable(payload), userId);
         }
     }
 
     private void handleTyping(JsonObject obj) {
         int roomId = obj.get("roomId").getAsInt();
         boolean isTyping = obj.has("isTyping") && obj.get("isTyping").getAsBoolean();
-        JsonObject payload = new JsonObject();
-        payload.addProperty("type", "TYPING");
-        payload.addProperty("roomId", roomId);
-        payload.addProperty("userId", userId);
-        payload.addProperty("username", username);
-        payload.addProperty("isTyping", isTyping);
-        broadcastToRoom(roomId, payload.toString(), null);
+        ClusterFanout.typing(roomId, userId, username, isTyping);
     }
 
     private void handleSeen(JsonObject obj) {
-        int messageId = obj.get("messageId").getAsInt();
+        long messageId = obj.get("messageId").getAsLong();
         int roomId = obj.has("roomId") ? obj.get("roomId").getAsInt() : 0;
-        chatService.markAsSeen(messageId, userId);
-        JsonObject payload = new JsonObject();
-        payload.addProperty("type", "SEEN");
-        payload.addProperty("messageId", messageId);
-        payload.addProperty("roomId", roomId);
-        payload.addProperty("userId", userId);
-        broadcastToRoom(roomId, payload.toString(), null);
+        if (roomId <= 0) {
+            return;
+        }
+        // SEEN is broadcast by broadcastSeen once the batched write commits
+        chatService.markAsSeen(roomId, messageId, userId);
     }
 
     private void handleReaction(JsonObject obj) {
-        int messageId = obj.get("messageId").getAsInt();
+        long messageId = obj.get("messageId").getAsLong();
         String emoji = obj.has("emoji") ? obj.get("emoji").getAsString() : "👍";
         var reactionOpt = chatService.addReaction(messageId, userId, emoji);
         if (reactionOpt.isPresent()) {
@@ -140,11 +173,11 @@ public class ChatEndpoint {
             int roomId = r.getMessage().getRoom().getId();
             JsonObject payload = new JsonObject();
             payload.addProperty("type", "REACTION");
-            payload.addProperty("messageId", messageId);
+            payload.addProperty("messageId", String.valueOf(messageId));
             payload.addProperty("userId", userId);
             payload.addProperty("username", username);
             payload.addProperty("emoji", emoji);
-            broadcastToRoom(roomId, payload.toString(), null);
+            broadcastToRoom(roomId, BroadcastFrame.durable(payload), null);
         }
     }
 
@@ -153,34 +186,29 @@ public class ChatEndpoint {
         // No broadcast needed for now
     }
 
-    private void broadcastToRoom(int roomId, String message, Integer excludeUserId) {
-        List<User> members = roomService.getMembers(roomId);
-        Set<Integer> memberIds = members.stream().map(User::getId).collect(Collectors.toSet());
-        for (Map.Entry<Integer, Session> e : USER_SESSIONS.entrySet()) {
-            if (!memberIds.contains(e.getKey())) continue;
-            if (excludeUserId != null && e.getKey().equals(excludeUserId)) continue;
-            try {
-                if (e.getValue().isOpen()) {
-                    e.getValue().getBasicRemote().sendText(message);
-                }
-            } catch (IOException ignored) {
-            }
+    private void rejectFrame(String type, RateLimiter.Rule rule) {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("type", "ERROR");
+        payload.addProperty("code", "RATE_LIMITED");
+        if (type != null) {
+            payload.addProperty("requestType", type);
         }
+        payload.addProperty("retryAfterMs", rule.retryAfterSeconds() * 1000);
+        outbox.send(BroadcastFrame.ephemeral(payload));
     }
 
-    private void broadcastUserStatus(int uid, String uname, boolean online) {
-        JsonObject payload = new JsonObject();
-        payload.addProperty("type", "USER_STATUS");
-        payload.addProperty("userId", uid);
-        payload.addProperty("username", uname);
-        payload.addProperty("isOnline", online);
-        for (Session s : USER_SESSIONS.values()) {
-            try {
-                if (s.isOpen()) {
-                    s.getBasicRemote().sendText(payload.toString());
-                }
-            } catch (IOException ignored) {
-            }
+    private static void broadcastSeen(List<ReadWatermark> watermarks) {
+        for (ReadWatermark w : watermarks) {
+            JsonObject payload = new JsonObject();
+            payload.addProperty("type", "SEEN");
+            payload.addProperty("messageId", String.valueOf(w.messageId()));
+            payload.addProperty("roomId", w.roomId());
+            payload.addProperty("userId", w.userId());
+            ClusterFanout.broadcast(w.roomId(), BroadcastFrame.ephemeral(payload), null);
         }
     }
+
+    private void broadcastToRoom(int roomId, BroadcastFrame frame, Integer excludeUserId) {
+        ClusterFanout.broadcast(roomId, frame, excludeUserId);
+    }
 }
@@ -0,0 +1,234 @@
+package com.tuganire.websocket;
+
+import com.tuganire.cluster.ClusterBus;
+import com.tuganire.service.ContentVersions;
+import com.tuganire.service.MembershipIndex;
+import com.tuganire.service.PresenceService;
+import com.tuganire.service.RecentMessageCache;
+import com.tuganire.service.UnreadCounters;
+import com.tuganire.util.BackgroundTasks;
+import com.tuganire.util.EnvConfig;
+import com.tuganire.util.Metrics;
+import com.tuganire.util.NodeIdentity;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bridges room events between nodes. Every event is delivered to local sessions directly and
+ * published on the ClusterBus; other nodes deliver it to their own sessions only.
+ *
+ * <p>A node listens on {@code room_<id>} only while it has a live session in that room, so it
+ * never receives traffic for rooms without local members. Presence, membership and room
+ * activity (which feeds unread counters and history caches) use the node-wide
+ * {@code presence}, {@code membership} and {@code activity} channels.
+ *
+ * <p>Every node sends a heartbeat on {@code presence} each PRESENCE_HEARTBEAT_MS. A node not
+ * heard from for PRESENCE_NODE_TIMEOUT_MS is presumed dead, and the users only it held are
+ * announced offline.
+ *
+ * <p>Wire format: {@code origin|kind|fields...|body}, where kind is F (frame), T (typing),
+ * P (presence), B (heartbeat), M (membership), S (message sent), R (room read) or H (history changed).
+ * The body is always last so it may contain '|'.
+ */
+public final class ClusterFanout {
+
+    private static final String PRESENCE = "presence";
+    private static final String MEMBERSHIP = "membership";
+    private static final String ACTIVITY = "activity";
+    private static final String ORIGIN = NodeIdentity.instanceId();
+
+    private static final long HEARTBEAT_MS = Long.parseLong(EnvConfig.get("PRESENCE_HEARTBEAT_MS", "10000"));
+    private static final long NODE_TIMEOUT_MS = Long.parseLong(EnvConfig.get("PRESENCE_NODE_TIMEOUT_MS", "35000"));
+
+    private static final LongAdder REMOTE_EVENTS = Metrics.counter("cluster.remoteEvents");
+    private static final LongAdder USERS_EXPIRED = Metrics.counter("cluster.presenceExpired");
+
+    private static final ClusterBus BUS = ClusterBus.fromConfig();
+
+    static {
+        BUS.start(ClusterFanout::onEvent);
+        BUS.subscribe(PRESENCE);
+        BUS.subscribe(MEMBERSHIP);
+        BUS.subscribe(ACTIVITY);
+        BackgroundTasks.every("cluster-heartbeat", HEARTBEAT_MS, ClusterFanout::heartbeat);
+    }
+
+    private ClusterFanout() {
+    }
+
+    /**
+     * Initialize the bus at startup so presence and membership from other nodes are tracked
+     * before the first local connection.
+     */
+    public static void start() {
+        // static initializer does the work
+    }
+
+    public static void shutdown() {
+        BUS.close();
+    }
+
+    /**
+     * Deliver a frame to the room's sessions on every node.
+     */
+    public static void broadcast(int roomId, BroadcastFrame frame, Integer excludeUserId) {
+        RoomSessionRegistry.deliver(roomId, frame, excludeUserId);
+        BUS.publish(roomChannel(roomId), ORIGIN + "|F|" + roomId + "|" + (excludeUserId != null ? excludeUserId : -1)
+                + "|" + (frame.isEphemeral() ? 1 : 0) + "|" + frame.text());
+    }
+
+    /**
+     * Feed a typing toggle to every node's TypingAggregator for the room.
+     */
+    public static void typing(int roomId, int userId, String username, boolean isTyping) {
+        TypingAggregator.update(roomId, userId, username, isTyping);
+        BUS.publish(roomChannel(roomId), ORIGIN + "|T|" + roomId + "|" + userId + "|" + (isTyping ? 1 : 0) + "|" + username);
+    }
+
+    /**
+     * Tell other nodes this node's view of a user changed (first session opened / grace expired).
+     */
+    static void presence(int userId, String username, boolean online, Set<Integer> roomIds) {
+        StringBuilder rooms = new StringBuilder();
+        for (int roomId : roomIds) {
+            if (rooms.length() > 0) rooms.append(',');
+            rooms.append(roomId);
+        }
+        BUS.publish(PRESENCE, ORIGIN + "|P|" + userId + "|" + (online ? 1 : 0) + "|" + rooms + "|" + username);
+    }
+
+    /**
+     * Membership changed: update every node's MembershipIndex and attach/detach the user's sessions.
+     */
+    public static void membership(int roomId, int userId, boolean added) {
+        applyMembership(roomId, userId, added);
+        BUS.publish(MEMBERSHIP, ORIGIN + "|M|" + roomId + "|" + userId + "|" + (added ? 1 : 0));
+    }
+
+    /**
+     * A message was committed: bump every node's unread counters for the room.
+     */
+    public static void messageSent(int roomId, int senderId) {
+        UnreadCounters.messageSent(roomId, senderId);
+        ContentVersions.messageSent(roomId);
+        BUS.publish(ACTIVITY, ORIGIN + "|S|" + roomId + "|" + senderId);
+    }
+
+    /**
+     * The user read the room: clear their unread counter on every node.
+     */
+    public static void roomRead(int roomId, int userId) {
+        UnreadCounters.read(roomId, userId);
+        ContentVersions.inboxChanged(userId);
+        BUS.publish(ACTIVITY, ORIGIN + "|R|" + roomId + "|" + userId);
+    }
+
+    /**
+     * Cached history of the room is stale (e.g. a reaction was added): drop it on every node.
+     */
+    public static void historyChanged(int roomId) {
+        RecentMessageCache.invalidate(roomId);
+        ContentVersions.historyChanged(roomId);
+        BUS.publish(ACTIVITY, ORIGIN + "|H|" + roomId);
+    }
+
+    /**
+     * Tell other nodes this one is alive, and let go of users held by nodes that are not.
+     */
+    private static void heartbeat() {
+        BUS.publish(PRESENCE, ORIGIN + "|B");
+        PresenceService.expireSilentNodes(NODE_TIMEOUT_MS).forEach((userId, username) -> {
+            USERS_EXPIRED.increment();
+            Set<Integer> rooms = new HashSet<>();
+            for (int roomId : MembershipIndex.roomsOf(userId)) {
+                rooms.add(roomId);
+            }
+            PresenceBroadcaster.remoteChange(userId, username, false, rooms);
+        });
+    }
+
+    static void roomActive(int roomId) {
+        BUS.subscribe(roomChannel(roomId));
+    }
+
+    static void roomIdle(int roomId) {
+        BUS.unsubscribe(roomChannel(roomId));
+    }
+
+    private static void applyMembership(int roomId, int userId, boolean added) {
+        if (added) {
+            MembershipIndex.added(roomId, userId);
+            UnreadCounters.joined(roomId, userId);
+            RoomSessionRegistry.addMember(roomId, userId);
+        } else {
+            MembershipIndex.removed(roomId, userId);
+            UnreadCounters.left(roomId, userId);
+            RoomSessionRegistry.removeMember(roomId, userId);
+        }
+        ContentVersions.inboxChanged(userId);
+    }
+
+    private static void onEvent(String channel, String payload) {
+        int a = payload.indexOf('|');
+        int b = payload.indexOf('|', a + 1);
+        String origin = payload.substring(0, a);
+        if (origin.equals(ORIGIN)) {
+            return; // already delivered locally
+        }
+        REMOTE_EVENTS.increment();
+        String rest = payload.substring(b + 1);
+        switch (payload.charAt(a + 1)) {
+            case 'F' -> {
+                String[] f = rest.split("\\|", 4);
+                int exclude = Integer.parseInt(f[1]);
+                BroadcastFrame frame = BroadcastFrame.ofText(f[3], "1".equals(f[2]));
+                RoomSessionRegistry.deliver(Integer.parseInt(f[0]), frame, exclude >= 0 ? exclude : null);
+            }
+            case 'T' -> {
+                String[] f = rest.split("\\|", 4);
+                TypingAggregator.update(Integer.parseInt(f[0]), Integer.parseInt(f[1]), f[3], "1".equals(f[2]));
+            }
+            case 'P' -> {
+                String[] f = rest.split("\\|", 4);
+                int userId = Integer.parseInt(f[0]);
+                boolean online = "1".equals(f[1]);
+                Set<Integer> rooms = new HashSet<>();
+                if (!f[2].isEmpty()) {
+                    for (String r : f[2].split(",")) rooms.add(Integer.parseInt(r));
+                }
+                PresenceService.remote(userId, f[3], origin, online);
+                PresenceBroadcaster.remoteChange(userId, f[3], online, rooms);
+            }
+            case 'B' -> PresenceService.heartbeat(origin);
+            case 'M' -> {
+                String[] f = rest.split("\\|", 3);
+                applyMembership(Integer.parseInt(f[0]), Integer.parseInt(f[1]), "1".equals(f[2]));
+            }
+            case 'S' -> {
+                String[] f = rest.split("\\|", 2);
+                int roomId = Integer.parseInt(f[0]);
+                UnreadCounters.messageSent(roomId, Integer.parseInt(f[1]));
+                RecentMessageCache.invalidate(roomId); // only the sending node has the message to append
+                ContentVersions.messageSent(roomId);
+            }
+            case 'R' -> {
+                String[] f = rest.split("\\|", 2);
+                int userId = Integer.parseInt(f[1]);
+                UnreadCounters.read(Integer.parseInt(f[0]), userId);
+                ContentVersions.inboxChanged(userId);
+            }
+            case 'H' -> {
+                int roomId = Integer.parseInt(rest);
+                RecentMessageCache.invalidate(roomId);
+                ContentVersions.historyChanged(roomId);
+            }
+            default -> { /* unknown kind from a newer node: ignore */ }
+        }
+    }
+
+    private static String roomChannel(int roomId) {
+        return "room_" + roomId;
+    }
+}
@@ -1,6 +1,6 @@
 package com.tuganire.websocket;
 
-import com.auth0.jwt.interfaces.DecodedJWT;
+import com.tuganire.model.TokenClaims;
 import com.tuganire.util.JwtUtil;
 
 import jakarta.websocket.HandshakeResponse;
@@ -37,10 +37,10 @@ public class HttpSessionConfigurator extends ServerEndpointConfig.Configurator {
                 if (token != null) break;
             }
         }
-        DecodedJWT jwt = JwtUtil.verify(token);
-        if (jwt != null) {
-            config.getUserProperties().put(USER_ID, JwtUtil.getUserId(jwt));
-            config.getUserProperties().put(USERNAME, JwtUtil.getUsername(jwt));
+        TokenClaims claims = JwtUtil.verify(token);
+        if (claims != null) {
+            config.getUserProperties().put(USER_ID, claims.userId());
+            config.getUserProperties().put(USERNAME, claims.username());
         }
         // If jwt is null, we don't put userId - ChatEndpoint will reject in @OnOpen
     }
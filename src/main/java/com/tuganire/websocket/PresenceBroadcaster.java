@@ -0,0 +1,153 @@
+package com.tuganire.websocket;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.tuganire.service.PresenceService;
+import com.tuganire.util.BackgroundTasks;
+import com.tuganire.util.EnvConfig;
+import com.tuganire.util.Metrics;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Presence fan-out scoped to co-members. A user going offline is only announced after
+ * a grace period, so tab reloads and reconnect storms produce nothing. Changes are
+ * collected and sent as one PRESENCE digest per recipient every interval.
+ *
+ * <p>Each node announces its own users to the cluster and digests both local and remote
+ * changes for its own sessions. A user is only reported offline once no node holds them.
+ */
+public final class PresenceBroadcaster {
+
+    private static final long GRACE_MS = Long.parseLong(EnvConfig.get("PRESENCE_GRACE_MS", "5000"));
+    private static final long DIGEST_MS = Long.parseLong(EnvConfig.get("PRESENCE_DIGEST_INTERVAL_MS", "1000"));
+
+    private static final LongAdder CHANGES = Metrics.counter("presence.changes");
+    private static final LongAdder SUPPRESSED = Metrics.counter("presence.suppressedFlaps");
+    private static final LongAdder DIGESTS = Metrics.counter("presence.digestFrames");
+
+    private record Change(int userId, String username, boolean online, Set<Integer> roomIds) {
+    }
+
+    /** userId -> latest undelivered change; newer changes replace older ones. */
+    private static final Map<Integer, Change> PENDING = new ConcurrentHashMap<>();
+    /** userId -> scheduled "offline" announcement still inside its grace period. */
+    private static final Map<Integer, ScheduledFuture<?>> GOING_OFFLINE = new ConcurrentHashMap<>();
+    /** Last state delivered per user, to drop changes that cancel out. */
+    private static final Map<Integer, Boolean> ANNOUNCED = new ConcurrentHashMap<>();
+
+    static {
+        Metrics.gauge("presence.pending", PENDING::size);
+        Metrics.gauge("presence.inGrace", GOING_OFFLINE::size);
+        BackgroundTasks.every("presence-digest", DIGEST_MS, PresenceBroadcaster::flush);
+    }
+
+    private PresenceBroadcaster() {
+    }
+
+    /**
+     * Called after the user's first session on this node opens.
+     */
+    public static void online(int userId, String username) {
+        ScheduledFuture<?> pendingOffline = GOING_OFFLINE.remove(userId);
+        if (pendingOffline != null && pendingOffline.cancel(false)) {
+            SUPPRESSED.increment(); // came back within the grace period: nobody saw them leave
+            return;
+        }
+        Set<Integer> rooms = RoomSessionRegistry.roomsOf(userId);
+        ClusterFanout.presence(userId, username, true, rooms);
+        enqueue(new Change(userId, username, true, rooms));
+    }
+
+    /**
+     * Called after the user's last session on this node closed. roomIds is captured before
+     * unregistering, since the registry forgets a disconnected user's rooms.
+     */
+    public static void offline(int userId, String username, Set<Integer> roomIds) {
+        GOING_OFFLINE.put(userId, BackgroundTasks.after("presence-grace", GRACE_MS, () -> {
+            GOING_OFFLINE.remove(userId);
+            if (PresenceService.expireIfDisconnected(userId)) {
+                ClusterFanout.presence(userId, username, false, roomIds);
+                if (!PresenceService.isOnline(userId)) {
+                    enqueue(new Change(userId, username, false, roomIds));
+                }
+            }
+        }));
+    }
+
+    /**
+     * A presence change announced by another node, after PresenceService has recorded it.
+     */
+    static void remoteChange(int userId, String username, boolean online, Set<Integer> roomIds) {
+        if (online || !PresenceService.isOnline(userId)) {
+            enqueue(new Change(userId, username, online, roomIds));
+        }
+    }
+
+    private static void enqueue(Change change) {
+        CHANGES.increment();
+        PENDING.put(change.userId(), change);
+    }
+
+    private static void flush() {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+        List<Change> changes = new ArrayList<>();
+        for (Integer uid : PENDING.keySet()) {
+            Change c = PENDING.remove(uid);
+            if (c == null) continue;
+            Boolean last = ANNOUNCED.put(uid, c.online());
+            if (last != null && last == c.online()) {
+                SUPPRESSED.increment();
+                continue;
+            }
+            if (!c.online()) {
+                ANNOUNCED.remove(uid);
+            }
+            changes.add(c);
+        }
+
+        // recipient -> which changes concern them (they share a room with the subject)
+        Map<SessionOutbox, BitSet> relevant = new HashMap<>();
+        for (int i = 0; i < changes.size(); i++) {
+            Change c = changes.get(i);
+            for (int roomId : c.roomIds()) {
+                for (SessionOutbox s : RoomSessionRegistry.sessionsInRoom(roomId)) {
+                    if (s.getUserId() != c.userId()) {
+                        relevant.computeIfAbsent(s, k -> new BitSet()).set(i);
+                    }
+                }
+            }
+        }
+
+        // recipients with the same set of changes share one encoded frame
+        Map<BitSet, BroadcastFrame> frames = new HashMap<>();
+        relevant.forEach((session, set) -> session.send(frames.computeIfAbsent(set, b -> digest(changes, b))));
+        DIGESTS.add(frames.size());
+    }
+
+    private static BroadcastFrame digest(List<Change> changes, BitSet which) {
+        JsonArray users = new JsonArray();
+        for (int i = which.nextSetBit(0); i >= 0; i = which.nextSetBit(i + 1)) {
+            Change c = changes.get(i);
+            JsonObject u = new JsonObject();
+            u.addProperty("userId", c.userId());
+            u.addProperty("username", c.username());
+            u.addProperty("isOnline", c.online());
+            users.add(u);
+        }
+        JsonObject payload = new JsonObject();
+        payload.addProperty("type", "PRESENCE");
+        payload.add("users", users);
+        return BroadcastFrame.ephemeral(payload);
+    }
+}
@@ -0,0 +1,137 @@
+package com.tuganire.websocket;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of live WebSocket sessions by room.
+ * Broadcasts read a room's sessions directly instead of loading members from the DB
+ * and scanning every connection. Kept up to date on open/close and on join/leave.
+ */
+public final class RoomSessionRegistry {
+
+    /** roomId -> sessions of every connected member of the room. */
+    private static final Map<Integer, Set<SessionOutbox>> ROOM_SESSIONS = new ConcurrentHashMap<>();
+    /** userId -> that user's open sessions (one per tab/device). */
+    private static final Map<Integer, Set<SessionOutbox>> USER_SESSIONS = new ConcurrentHashMap<>();
+    /** userId -> rooms the connected user belongs to. */
+    private static final Map<Integer, Set<Integer>> USER_ROOMS = new ConcurrentHashMap<>();
+
+    private RoomSessionRegistry() {
+    }
+
+    /**
+     * Register a newly opened session and attach it to all of the user's rooms.
+     */
+    public static synchronized void register(SessionOutbox session, Collection<Integer> roomIds) {
+        int userId = session.getUserId();
+        USER_SESSIONS.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(session);
+        Set<Integer> rooms = USER_ROOMS.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet());
+        rooms.addAll(roomIds);
+        for (int roomId : rooms) {
+            attach(roomId).add(session);
+        }
+    }
+
+    /**
+     * Remove a session from every room. Returns false if it was already removed
+     * (onError and onClose can both fire for the same session).
+     */
+    public static synchronized boolean unregister(SessionOutbox session) {
+        int userId = session.getUserId();
+        Set<SessionOutbox> sessions = USER_SESSIONS.get(userId);
+        if (sessions == null || !sessions.remove(session)) {
+            return false;
+        }
+        for (int roomId : USER_ROOMS.getOrDefault(userId, Set.of())) {
+            detach(roomId, session);
+        }
+        if (sessions.isEmpty()) {
+            USER_SESSIONS.remove(userId);
+            USER_ROOMS.remove(userId);
+        }
+        return true;
+    }
+
+    /**
+     * User joined a room: attach their open sessions, if any.
+     */
+    public static synchronized void addMember(int roomId, int userId) {
+        Set<SessionOutbox> sessions = USER_SESSIONS.get(userId);
+        if (sessions == null) {
+            return;
+        }
+        USER_ROOMS.get(userId).add(roomId);
+        attach(roomId).addAll(sessions);
+    }
+
+    /**
+     * User left a room: detach their open sessions, if any.
+     */
+    public static synchronized void removeMember(int roomId, int userId) {
+        Set<SessionOutbox> sessions = USER_SESSIONS.get(userId);
+        if (sessions == null) {
+            return;
+        }
+        USER_ROOMS.get(userId).remove(roomId);
+        for (SessionOutbox s : sessions) {
+            detach(roomId, s);
+        }
+    }
+
+    /**
+     * Live sessions in a room. Never null.
+     */
+    public static Set<SessionOutbox> sessionsInRoom(int roomId) {
+        Set<SessionOutbox> room = ROOM_SESSIONS.get(roomId);
+        return room != null ? Collections.unmodifiableSet(room) : Set.of();
+    }
+
+    /**
+     * Queue a frame on every live session in the room on this node. The frame is encoded once
+     * and shared. Use ClusterFanout.broadcast to reach sessions on other nodes too.
+     */
+    public static void deliver(int roomId, BroadcastFrame frame, Integer excludeUserId) {
+        Set<SessionOutbox> room = ROOM_SESSIONS.get(roomId);
+        if (room == null) {
+            return;
+        }
+        for (SessionOutbox s : room) {
+            if (excludeUserId != null && s.getUserId() == excludeUserId) continue;
+            s.send(frame);
+        }
+    }
+
+    public static boolean isConnected(int userId) {
+        return USER_SESSIONS.containsKey(userId);
+    }
+
+    /**
+     * Snapshot of the rooms a connected user belongs to; empty if not connected.
+     */
+    public static Set<Integer> roomsOf(int userId) {
+        Set<Integer> rooms = USER_ROOMS.get(userId);
+        return rooms != null ? Set.copyOf(rooms) : Set.of();
+    }
+
+    private static Set<SessionOutbox> attach(int roomId) {
+        return ROOM_SESSIONS.computeIfAbsent(roomId, k -> {
+            ClusterFanout.roomActive(roomId);
+            return ConcurrentHashMap.newKeySet();
+        });
+    }
+
+    private static void detach(int roomId, SessionOutbox session) {
+        Set<SessionOutbox> room = ROOM_SESSIONS.get(roomId);
+        if (room != null) {
+            room.remove(session);
+            if (room.isEmpty()) {
+                ROOM_SESSIONS.remove(roomId);
+                ClusterFanout.roomIdle(roomId);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.tuganire.websocket;
+
+import com.tuganire.util.EnvConfig;
+import com.tuganire.util.Metrics;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded outbound queue for one WebSocket session, drained with non-blocking async sends.
+ * A slow peer only fills its own queue; senders never wait on it.
+ *
+ * <p>When the queue is full, ephemeral frames (typing, receipts, presence) are dropped under
+ * the DROP_EPHEMERAL policy; anything else closes the session so the client reconnects and resyncs.
+ */
+public final class SessionOutbox {
+
+    public enum SlowConsumerPolicy {
+        /** Drop ephemeral frames when full; disconnect only if a durable frame does not fit. */
+        DROP_EPHEMERAL,
+        /** Disconnect on any overflow. */
+        DISCONNECT
+    }
+
+    private static final int MAX_MESSAGES = Integer.parseInt(EnvConfig.get("WS_OUTBOX_MAX_MESSAGES", "256"));
+    private static final long MAX_BYTES = Long.parseLong(EnvConfig.get("WS_OUTBOX_MAX_BYTES", "1048576"));
+    private static final SlowConsumerPolicy POLICY =
+            SlowConsumerPolicy.valueOf(EnvConfig.get("WS_SLOW_CONSUMER_POLICY", "DROP_EPHEMERAL").toUpperCase());
+
+    private static final LongAdder ENQUEUED = Metrics.counter("ws.outbox.enqueued");
+    private static final LongAdder SENT = Metrics.counter("ws.outbox.sent");
+    private static final LongAdder DROPPED = Metrics.counter("ws.outbox.dropped");
+    private static final LongAdder SEND_FAILURES = Metrics.counter("ws.outbox.sendFailures");
+    private static final LongAdder SLOW_CONSUMER_CLOSES = Metrics.counter("ws.outbox.slowConsumerCloses");
+    private static final AtomicLong QUEUED = new AtomicLong();
+    private static final AtomicLong MAX_DEPTH = new AtomicLong();
+
+    static {
+        Metrics.gauge("ws.outbox.queued", QUEUED::get);
+        Metrics.gauge("ws.outbox.maxDepth", MAX_DEPTH::get);
+    }
+
+    private final Session session;
+    private final int userId;
+    private final SendHandler onSent = this::onSent;
+
+    // Guarded by this
+    private final ArrayDeque<BroadcastFrame> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    private boolean sending;
+    private boolean closed;
+
+    public SessionOutbox(Session session, int userId) {
+        this.session = session;
+        this.userId = userId;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public synchronized int depth() {
+        return queue.size();
+    }
+
+    /**
+     * Queue a frame for this session. Never blocks on the network and allocates nothing per call;
+     * the frame instance is shared with every other recipient.
+     */
+    public void send(BroadcastFrame frame) {
+        boolean startDrain = false;
+        boolean overflow = false;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (queue.size() >= MAX_MESSAGES || queuedBytes + frame.byteLength() > MAX_BYTES) {
+                if (frame.isEphemeral() && POLICY == SlowConsumerPolicy.DROP_EPHEMERAL) {
+                    DROPPED.increment();
+                    return;
+                }
+                overflow = true;
+            } else {
+                queue.add(frame);
+                queuedBytes += frame.byteLength();
+                frame.countRecipient();
+                QUEUED.incrementAndGet();
+                MAX_DEPTH.accumulateAndGet(queue.size(), Math::max);
+                ENQUEUED.increment();
+                if (!sending) {
+                    sending = true;
+                    startDrain = true;
+                }
+            }
+        }
+        if (overflow) {
+            SLOW_CONSUMER_CLOSES.increment();
+            close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Slow consumer"));
+        } else if (startDrain) {
+            drain();
+        }
+    }
+
+    /**
+     * Discard anything still queued and close the session.
+     */
+    public void close(CloseReason reason) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            DROPPED.add(queue.size());
+            QUEUED.addAndGet(-queue.size());
+            queue.clear();
+            queuedBytes = 0;
+        }
+        try {
+            if (session.isOpen()) {
+                session.close(reason);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void drain() {
+        BroadcastFrame next;
+        synchronized (this) {
+            next = closed ? null : queue.poll();
+            if (next == null) {
+                sending = false;
+                return;
+            }
+            queuedBytes -= next.byteLength();
+            QUEUED.decrementAndGet();
+        }
+        try {
+            session.getAsyncRemote().sendBinary(next.payload(), onSent);
+        } catch (RuntimeException e) {
+            onSent(new SendResult(e));
+        }
+    }
+
+    private void onSent(SendResult result) {
+        if (!result.isOK()) {
+            SEND_FAILURES.increment();
+            close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "Send failed"));
+            return;
+        }
+        SENT.increment();
+        drain();
+    }
+}
@@ -0,0 +1,114 @@
+package com.tuganire.websocket;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.tuganire.util.BackgroundTasks;
+import com.tuganire.util.EnvConfig;
+import com.tuganire.util.Metrics;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-room typing state. Inbound TYPING frames only update state; at most one
+ * "who is typing" digest per room is sent every interval, and only when the set of
+ * typers actually changed. Typers expire after a TTL without needing a stop event.
+ * Toggles from other nodes arrive through ClusterFanout, so each node's digest covers the whole room.
+ */
+public final class TypingAggregator {
+
+    private static final long INTERVAL_MS = Long.parseLong(EnvConfig.get("WS_TYPING_DIGEST_INTERVAL_MS", "1000"));
+    private static final long TTL_MS = Long.parseLong(EnvConfig.get("WS_TYPING_TTL_MS", "5000"));
+
+    private static final LongAdder EVENTS = Metrics.counter("ws.typing.events");
+    private static final LongAdder DIGESTS = Metrics.counter("ws.typing.digests");
+
+    private static final Map<Integer, RoomTyping> ROOMS = new ConcurrentHashMap<>();
+
+    static {
+        Metrics.gauge("ws.typing.activeRooms", ROOMS::size);
+        BackgroundTasks.every("typing-digest", INTERVAL_MS, TypingAggregator::flush);
+    }
+
+    private record Typer(String username, long expiresAt) {
+    }
+
+    private static final class RoomTyping {
+        final Map<Integer, Typer> typers = new LinkedHashMap<>();
+        Set<Integer> lastSent = Set.of();
+        boolean dirty;
+        boolean removed;
+    }
+
+    private TypingAggregator() {
+    }
+
+    /**
+     * Record a start/stop toggle. Cheap; never sends anything itself.
+     */
+    public static void update(int roomId, int userId, String username, boolean isTyping) {
+        EVENTS.increment();
+        while (true) {
+            RoomTyping room = ROOMS.computeIfAbsent(roomId, k -> new RoomTyping());
+            synchronized (room) {
+                if (room.removed) {
+                    continue; // lost a race with flush() dropping the idle room
+                }
+                if (isTyping) {
+                    room.typers.put(userId, new Typer(username, System.currentTimeMillis() + TTL_MS));
+                } else {
+                    room.typers.remove(userId);
+                }
+                room.dirty = true;
+                return;
+            }
+        }
+    }
+
+    private static void flush() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<Integer, RoomTyping>> it = ROOMS.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, RoomTyping> e = it.next();
+            RoomTyping room = e.getValue();
+            BroadcastFrame digest = null;
+            synchronized (room) {
+                room.dirty |= room.typers.values().removeIf(t -> t.expiresAt() <= now);
+                if (room.dirty) {
+                    room.dirty = false;
+                    if (!room.typers.keySet().equals(room.lastSent)) {
+                        room.lastSent = new HashSet<>(room.typers.keySet());
+                        digest = digest(e.getKey(), room.typers);
+                    }
+                }
+                if (room.typers.isEmpty() && room.lastSent.isEmpty()) {
+                    room.removed = true;
+                    it.remove();
+                }
+            }
+            if (digest != null) {
+                DIGESTS.increment();
+                RoomSessionRegistry.deliver(e.getKey(), digest, null);
+            }
+        }
+    }
+
+    private static BroadcastFrame digest(int roomId, Map<Integer, Typer> typers) {
+        JsonArray users = new JsonArray();
+        typers.forEach((userId, t) -> {
+            JsonObject u = new JsonObject();
+            u.addProperty("userId", userId);
+            u.addProperty("username", t.username());
+            users.add(u);
+        });
+        JsonObject payload = new JsonObject();
+        payload.addProperty("type", "TYPING");
+        payload.addProperty("roomId", roomId);
+        payload.add("users", users);
+        return BroadcastFrame.ephemeral(payload);
+    }
+}
@@ -7,9 +7,21 @@
     const ctx = window.TUGANIRE || {};
     const baseUrl = ctx.contextPath || '';
     const wsBase = (location.protocol === 'https:' ? 'wss:' : 'ws:') + '//' + location.host + baseUrl;
+    const utf8 = new TextDecoder();
     let ws = null;
-    let typingTimeout = null;
+    let lastTypingSentAt = 0;
     let unreadCount = 0;
+    const onlineUsers = {}; // userId -> isOnline, from PRESENCE digests
+
+    // Server expires typers on its own (WS_TYPING_TTL_MS); refresh well inside that window.
+    const TYPING_REFRESH_MS = 3000;
+
+    // Older history is fetched when the user scrolls within this many px of the top
+    const HISTORY_SCROLL_THRESHOLD = 150;
+    const HISTORY_PAGE_SIZE = 50;
+    let olderCursor = null;
+    let loadingOlder = false;
+    let connectedOnce = false;
 
     // DOM refs (set when chat area exists)
     let messagesContainer, messagesEl, messageForm, messageInput, typingIndicator, currentRoomIdEl;
@@ -25,7 +37,11 @@
 
             if (messageForm && messageInput) {
                 messageForm.addEventListener('submit', onSendMessage);
-                messageInput.addEventListener('input', debounce(onTyping, 400));
+                messageInput.addEventListener('input', onTyping);
+            }
+            if (messagesEl && messagesContainer) {
+                messagesContainer.addEventListener('scroll', onHistoryScroll);
+                loadNewest();
             }
             connectWs();
         }
@@ -39,16 +55,20 @@
     function connectWs() {
         const url = wsBase + '/ws/chat';
         ws = new WebSocket(url);
+        // the server sends its JSON pre-encoded as UTF-8 binary frames
+        ws.binaryType = 'arraybuffer';
 
         ws.onopen = () => {
             if (ctx.currentRoomId) {
                 sendWs({ type: 'JOIN_ROOM', roomId: ctx.currentRoomId });
+                if (connectedOnce) catchUp();
             }
+            connectedOnce = true;
         };
 
         ws.onmessage = (ev) => {
             try {
-                const data = JSON.parse(ev.data);
+                const data = JSON.parse(typeof ev.data === 'string' ? ev.data : utf8.decode(ev.data));
                 handleWsMessage(data);
             } catch (e) {}
         };
@@ -78,8 +98,8 @@
                 }
                 break;
             case 'TYPING':
-                if (data.roomId === ctx.currentRoomId && data.userId !== ctx.currentUserId) {
-                    typingIndicator.textContent = data.isTyping ? data.username + ' is typing...' : '';
+                if (data.roomId === ctx.currentRoomId && typingIndicator) {
+                    typingIndicator.textContent = typingText(data.users || []);
                 }
                 break;
             case 'SEEN':
@@ -102,14 +122,27 @@
                     }
                 }
                 break;
-            case 'USER_STATUS':
-                // Could update online indicators in UI
+            case 'PRESENCE':
+                (data.users || []).forEach(u => {
+                    onlineUsers[u.userId] = u.isOnline;
+                    const item = document.querySelector(`.user-item[data-user-id="${u.userId}"]`);
+                    if (item) item.classList.toggle('online', u.isOnline);
+                });
+                break;
+            case 'ERROR':
+                if (data.code === 'RATE_LIMITED' && data.requestType !== 'TYPING' && data.requestType !== 'SEEN') {
+                    showToast('You are sending too fast. Please slow down.');
+                }
                 break;
         }
     }
 
     function appendMessage(data) {
         if (!messagesEl) return;
+        messagesEl.appendChild(renderMessage(data));
+    }
+
+    function renderMessage(data) {
         const isOwn = data.senderId === ctx.currentUserId;
         const div = document.createElement('div');
         div.className = 'message' + (isOwn ? ' own' : '');
@@ -119,7 +152,82 @@
             <p class="msg-content">${escapeHtml(data.content || '')}</p>
             <span class="msg-time">${data.createdAt ? new Date(data.createdAt).toLocaleTimeString() : ''}</span>
         `;
-        messagesEl.appendChild(div);
+        const reactions = Object.entries(data.reactions || {});
+        if (reactions.length) {
+            const r = document.createElement('span');
+            r.className = 'reactions';
+            r.textContent = reactions.map(([emoji, n]) => ' ' + emoji + (n > 1 ? n : '')).join('');
+            div.appendChild(r);
+        }
+        return div;
+    }
+
+    function historyUrl(before) {
+        return baseUrl + '/messages?roomId=' + encodeURIComponent(ctx.currentRoomId)
+            + '&limit=' + HISTORY_PAGE_SIZE + (before ? '&before=' + encodeURIComponent(before) : '');
+    }
+
+    // The page is rendered without history: the newest page is fetched here, where the server
+    // can send it as stored in its history cache. Live messages that came in first stay below it.
+    function loadNewest() {
+        fetch(historyUrl(null), { headers: { 'X-Requested-With': 'XMLHttpRequest' } })
+            .then(r => r.ok ? r.json() : Promise.reject(r.status))
+            .then(page => {
+                const frag = document.createDocumentFragment();
+                (page.messages || []).forEach(m => {
+                    if (!messagesEl.querySelector(`[data-message-id="${m.id}"]`)) {
+                        frag.appendChild(renderMessage(m));
+                    }
+                });
+                messagesEl.insertBefore(frag, messagesEl.firstChild);
+                olderCursor = page.prevCursor || null;
+                scrollToBottom();
+            })
+            .catch(() => {});
+    }
+
+    // After a reconnect, fetch the newest page and add whatever arrived while we were away
+    function catchUp() {
+        if (!messagesEl) return;
+        fetch(historyUrl(null), { headers: { 'X-Requested-With': 'XMLHttpRequest' } })
+            .then(r => r.ok ? r.json() : Promise.reject(r.status))
+            .then(page => {
+                let added = false;
+                (page.messages || []).forEach(m => {
+                    if (!messagesEl.querySelector(`[data-message-id="${m.id}"]`)) {
+                        appendMessage(m);
+                        added = true;
+                    }
+                });
+                if (added) scrollToBottom();
+            })
+            .catch(() => {});
+    }
+
+    function onHistoryScroll() {
+        if (loadingOlder || !olderCursor || messagesContainer.scrollTop > HISTORY_SCROLL_THRESHOLD) return;
+        loadingOlder = true;
+        fetch(historyUrl(olderCursor), { headers: { 'X-Requested-With': 'XMLHttpRequest' } })
+            .then(r => r.ok ? r.json() : Promise.reject(r.status))
+            .then(page => {
+                // keep the viewport on the same message while older ones are inserted above it
+                const fromBottom = messagesContainer.scrollHeight - messagesContainer.scrollTop;
+                const frag = document.createDocumentFragment();
+                (page.messages || []).forEach(m => frag.appendChild(renderMessage(m)));
+                messagesEl.insertBefore(frag, messagesEl.firstChild);
+                messagesContainer.scrollTop = messagesContainer.scrollHeight - fromBottom;
+                olderCursor = page.prevCursor || null;
+            })
+            .catch(() => {})
+            .finally(() => { loadingOlder = false; });
+    }
+
+    function typingText(users) {
+        const names = users.filter(u => u.userId !== ctx.currentUserId).map(u => u.username);
+        if (names.length === 0) return '';
+        if (names.length === 1) return names[0] + ' is typing...';
+        if (names.length === 2) return names[0] + ' and ' + names[1] + ' are typing...';
+        return 'Several people are typing...';
     }
 
     function escapeHtml(s) {
@@ -136,25 +244,16 @@
 
         sendWs({ type: 'MESSAGE', roomId: parseInt(roomId), content });
         messageInput.value = '';
-        sendWs({ type: 'TYPING', roomId: parseInt(roomId), isTyping: false });
+        lastTypingSentAt = 0; // the server clears our typing state when the message lands
     }
 
     function onTyping() {
         const roomId = currentRoomIdEl?.value || ctx.currentRoomId;
         if (!roomId) return;
+        const now = Date.now();
+        if (now - lastTypingSentAt < TYPING_REFRESH_MS) return;
+        lastTypingSentAt = now;
         sendWs({ type: 'TYPING', roomId: parseInt(roomId), isTyping: true });
-        clearTimeout(typingTimeout);
-        typingTimeout = setTimeout(() => {
-            sendWs({ type: 'TYPING', roomId: parseInt(roomId), isTyping: false });
-        }, 1500);
-    }
-
-    function debounce(fn, ms) {
-        let t;
-        return function () {
-            clearTimeout(t);
-            t = setTimeout(() => fn.apply(this, arguments), ms);
-        };
     }
 
     function scrollToBottom() {
@@ -205,7 +304,7 @@
                     .then(users => {
                         results.innerHTML = users.map(u => `
                             <div class="user-item" data-user-id="${u.id}" data-username="${escapeHtml(u.username)}">
-                                ${u.username} ${u.isOnline ? '🟢' : ''}
+                                ${escapeHtml(u.username)} ${(onlineUsers[u.id] ?? u.isOnline) ? '🟢' : ''}
                             </div>
                         `).join('') || '<div class="user-item">No users found</div>';
                         results.style.display = 'block';
@@ -6,9 +6,9 @@
     <meta charset="UTF-8">
     <meta name="viewport" content="width=device-width, initial-scale=1.0">
     <title>Tuganire — Chat</title>
-    <link rel="stylesheet" href="<c:url value='/css/style.css'/>">
+    <link rel="stylesheet" href="<c:url value='/${assets["css/style.css"]}'/>">
 </head>
-<body class="chat-layout">
+<body class="chat-layout" data-username="<c:out value='${currentUser.username}'/>">
     <aside class="sidebar">
         <header class="sidebar-header">
             <h2>Tuganire</h2>
@@ -25,7 +25,7 @@
             <c:forEach var="room" items="${rooms}">
                 <a href="${pageContext.request.contextPath}/chat?roomId=${room.id}" class="room-item ${currentRoom != null && currentRoom.id == room.id ? 'active' : ''}" data-room-id="${room.id}">
                     <span class="room-name">${room.name}</span>
-                    <span class="room-badge" data-room-id="${room.id}"></span>
+                    <span class="room-badge" data-room-id="${room.id}">${room.unreadCount > 0 ? room.unreadCount : ''}</span>
                 </a>
             </c:forEach>
             <c:if test="${empty rooms}">
@@ -41,15 +41,7 @@
                     <h3>${currentRoom.name}</h3>
                 </header>
                 <div class="messages-container" id="messages-container">
-                    <div class="messages" id="messages">
-                        <c:forEach var="msg" items="${messages}">
-                            <div class="message ${msg.sender.id == currentUser.id ? 'own' : ''}" data-message-id="${msg.id}">
-                                <span class="msg-sender">${msg.sender.username}</span>
-                                <p class="msg-content"><c:out value="${msg.content}"/></p>
-                                <span class="msg-time">${msg.createdAt}</span>
-                            </div>
-                        </c:forEach>
-                    </div>
+                    <div class="messages" id="messages"></div>
                 </div>
                 <div class="typing-indicator" id="typing-indicator"></div>
                 <form class="input-bar" id="message-form">
@@ -70,10 +62,10 @@
         window.TUGANIRE = {
             contextPath: "${pageContext.request.contextPath}",
             currentUserId: ${currentUser != null ? currentUser.id : 0},
-            currentUsername: "${currentUser != null ? currentUser.username : ''}",
+            currentUsername: document.body.dataset.username,
             currentRoomId: ${currentRoom != null ? currentRoom.id : 0}
         };
     </script>
-    <script src="<c:url value='/js/chat.js'/>"></script>
+    <script src="<c:url value='/${assets["js/chat.js"]}'/>"></script>
 </body>
 </html>
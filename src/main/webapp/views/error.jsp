@@ -6,7 +6,7 @@
     <meta charset="UTF-8">
     <meta name="viewport" content="width=device-width, initial-scale=1.0">
     <title>Error — Tuganire</title>
-    <link rel="stylesheet" href="<c:url value='/css/style.css'/>">
+    <link rel="stylesheet" href="<c:url value='/${assets["css/style.css"]}'/>">
 </head>
 <body class="auth-page">
     <main class="auth-card">
@@ -0,0 +1,110 @@
+package com.tuganire.bench;
+
+import com.tuganire.model.EncodedHistoryPage;
+import com.tuganire.model.Room;
+import com.tuganire.model.User;
+import com.tuganire.service.ChatService;
+import com.tuganire.support.TestDatabase;
+import com.tuganire.util.WorkDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Container vs virtual EXECUTION_MODE (user-008) under more concurrent clients than container
+ * threads. Each JMH thread is a client; a fixed pool of CONTAINER_THREADS platform threads stands in
+ * for Tomcat's connector. A request loads a history page, from the database (history cache off)
+ * or from RecentMessageCache without touching the pool. In container mode the container thread
+ * runs it and holds a thread while waiting for Hikari; in virtual mode the container thread hands
+ * it to WorkDispatcher (as AsyncWork does) and is free again at once, and only connection
+ * checkouts wait for a DB_CONCURRENCY_LIMIT permit. Throughput and SampleTime (p99) are both reported.
+ *
+ * <p>Needs TEST_DB_URL. Run on Java 21 for real virtual threads: {@code mvn -Pbench test
+ * -Dbench="Dispatch -jvm /path/to/java21/bin/java"}; on 17 the dispatcher falls back to platform threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(400)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+public class DispatchBenchmark {
+
+    /** Tomcat's default maxThreads. */
+    private static final int CONTAINER_THREADS = 200;
+
+    @Param({"container", "virtual"})
+    public String mode;
+
+    @Param({"database", "cached"})
+    public String history;
+
+    private ChatService chat;
+    private ExecutorService container;
+    private int roomId;
+    private int userId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("EXECUTION_MODE", mode);
+        if (history.equals("database")) {
+            System.setProperty("HISTORY_CACHE_MB", "0");
+        }
+        TestDatabase.configure();
+        User user = TestDatabase.newUser();
+        Room room = TestDatabase.newRoom(user);
+        chat = new ChatService();
+        for (int i = 0; i < 100; i++) {
+            chat.sendMessage(room.getId(), user.getId(), user.getUsername(), "message " + i, null).orElseThrow();
+        }
+        roomId = room.getId();
+        userId = user.getId();
+        chat.loadHistoryJson(roomId, userId, 50, null, null).close(); // fills the cache when it is on
+        container = Executors.newFixedThreadPool(CONTAINER_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        container.shutdownNow();
+    }
+
+    @Benchmark
+    public Object request() throws Exception {
+        CompletableFuture<Object> response = new CompletableFuture<>();
+        container.execute(() -> {
+            if (WorkDispatcher.isEnabled()) {
+                WorkDispatcher.submit(() -> handle(response));
+            } else {
+                handle(response);
+            }
+        });
+        return response.get();
+    }
+
+    private void handle(CompletableFuture<Object> response) {
+        try {
+            try (EncodedHistoryPage page = chat.loadHistoryJson(roomId, userId, 50, null, null)) {
+                response.complete(page.size());
+            }
+        } catch (RuntimeException e) {
+            response.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.tuganire.bench;
+
+import com.tuganire.dao.RoomDAO;
+import com.tuganire.dao.UserDAO;
+import com.tuganire.model.Room;
+import com.tuganire.model.User;
+import com.tuganire.support.CountingDriver;
+import com.tuganire.support.TestDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * User and Room lookups with the second-level cache on and off (HIBERNATE_L2_CACHE). Besides
+ * ops/s, each trial prints the JDBC statements it issued per operation, counted by
+ * CountingDriver over the measured iterations.
+ *
+ * <p>Needs TEST_DB_URL: {@code mvn -Pbench test -Dbench="EntityCache"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+public class EntityCacheBenchmark {
+
+    private static final int USERS = 200;
+
+    @Param({"true", "false"})
+    public String l2;
+
+    private UserDAO userDAO;
+    private RoomDAO roomDAO;
+    private final int[] userIds = new int[USERS];
+    private final String[] usernames = new String[USERS];
+    private final String[] emails = new String[USERS];
+    private final int[] roomIds = new int[USERS];
+    private final LongAdder ops = new LongAdder();
+    private long statementsBefore;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("HIBERNATE_L2_CACHE", l2);
+        TestDatabase.configure();
+        userDAO = new UserDAO();
+        roomDAO = new RoomDAO();
+        for (int i = 0; i < USERS; i++) {
+            User u = TestDatabase.newUser();
+            Room r = TestDatabase.newRoom(u);
+            userIds[i] = u.getId();
+            usernames[i] = u.getUsername();
+            emails[i] = u.getEmail();
+            roomIds[i] = r.getId();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void startCounting() {
+        ops.reset();
+        statementsBefore = CountingDriver.executions();
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.printf(" [statements/op: %.3f]", (CountingDriver.executions() - statementsBefore) / (double) ops.sum());
+    }
+
+    @Benchmark
+    public Object findUserById() {
+        ops.increment();
+        return userDAO.findById(userIds[next()]);
+    }
+
+    @Benchmark
+    public Object findUserByUsername() {
+        ops.increment();
+        return userDAO.findByUsername(usernames[next()]);
+    }
+
+    @Benchmark
+    public Object findUserByEmail() {
+        ops.increment();
+        return userDAO.findByEmail(emails[next()]);
+    }
+
+    @Benchmark
+    public Object findRoomById() {
+        ops.increment();
+        return roomDAO.findById(roomIds[next()]);
+    }
+
+    private static int next() {
+        return ThreadLocalRandom.current().nextInt(USERS);
+    }
+}
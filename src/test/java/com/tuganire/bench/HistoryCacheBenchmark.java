@@ -0,0 +1,75 @@
+package com.tuganire.bench;
+
+import com.tuganire.model.EncodedHistoryPage;
+import com.tuganire.model.MessageView;
+import com.tuganire.service.RecentMessageCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A RecentMessageCache hit for the newest 50 messages of a room, written to a response body
+ * as ChatServlet does. Run with {@code -prof gc} for the bytes allocated per page, e.g.
+ * {@code mvn -Pbench test -Dbench="HistoryCache -prof gc"}. Needs no database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HistoryCacheBenchmark {
+
+    private static final int ROOM_ID = 1;
+
+    /** Stands in for the servlet output stream, so only the cache's own work is measured. */
+    private final OutputStream body = new OutputStream() {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<MessageView> messages = new ArrayList<>();
+        Instant now = Instant.now();
+        for (int i = 1; i <= RecentMessageCache.capacity(); i++) {
+            messages.add(new MessageView(1_000_000L + i, ROOM_ID, 1 + i % 3, "user" + (i % 3),
+                    "message number " + i + ", about as long as a typical chat line", null,
+                    i % 5 == 0 ? 1_000_000L + i - 1 : null, now.plusMillis(i), Collections.emptyMap()));
+        }
+        RecentMessageCache.fill(ROOM_ID, RecentMessageCache.version(ROOM_ID), messages, true);
+    }
+
+    @Benchmark
+    public Object newestPage() throws IOException {
+        try (EncodedHistoryPage page = RecentMessageCache.newest(ROOM_ID, 50)) {
+            page.writeTo(body);
+            return page;
+        }
+    }
+}
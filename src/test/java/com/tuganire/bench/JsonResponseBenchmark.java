@@ -0,0 +1,158 @@
+package com.tuganire.bench;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.tuganire.model.InboxEntry;
+import com.tuganire.model.RoomType;
+import com.tuganire.servlet.JsonResponse;
+import com.tuganire.servlet.RoomServlet;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a GET /rooms page of {@code rows} inbox entries (user-022): {@code streamed} is
+ * JsonResponse with RoomServlet's writer, {@code toJsonString} the old path (HashMaps, one
+ * gson.toJson String, then the response writer). The response is a proxy whose output stream
+ * only counts bytes; the bytes each path puts on the wire are printed once per trial.
+ *
+ * <p>Run with {@code -prof gc} for the allocation per response:
+ * {@code mvn -Pbench test -Dbench="JsonResponse -prof gc"}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonResponseBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int rows;
+
+    /** Accept-Encoding sent by the client: "gzip" or "identity". */
+    @Param({"gzip", "identity"})
+    public String encoding;
+
+    private final Gson gson = new Gson();
+    private final List<InboxEntry> page = new ArrayList<>();
+    private HttpServletRequest req;
+    private HttpServletResponse res;
+    private long wire;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Instant now = Instant.parse("2026-10-18T09:30:00Z");
+        for (int i = 0; i < rows; i++) {
+            page.add(new InboxEntry(1000 + i, "Room number " + i, i % 4 == 0 ? RoomType.DM : RoomType.GROUP,
+                    370040323620995072L + i, "See you at the standup tomorrow, I'll bring the notes (#" + i + ")",
+                    now.minusSeconds(i * 60L), i % 7));
+        }
+        req = proxy(HttpServletRequest.class, (p, m, a) -> "Accept-Encoding".equals(a[0]) ? encoding : null);
+        ServletOutputStream body = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                wire++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                wire += len;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        };
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+        res = proxy(HttpServletResponse.class, (p, m, a) -> switch (m.getName()) {
+            case "getOutputStream" -> body;
+            case "getWriter" -> writer;
+            default -> null;
+        });
+
+        wire = 0;
+        streamed();
+        long streamed = wire;
+        wire = 0;
+        toJsonString();
+        writer.flush();
+        System.out.printf("%n[wire bytes, %d rows, %s: streamed %d, toJsonString %d]%n", rows, encoding, streamed, wire);
+    }
+
+    @Benchmark
+    public long streamed() throws IOException {
+        try (JsonWriter out = JsonResponse.writer(req, res)) {
+            out.beginObject().name("rooms").beginArray();
+            for (InboxEntry r : page) {
+                RoomServlet.writeRoom(out, r);
+            }
+            out.endArray();
+            out.name("nextCursor").value("AAABkZ4yT2AAAAPo");
+            out.endObject();
+        }
+        return wire;
+    }
+
+    /** RoomServlet's GET before user-022. */
+    @Benchmark
+    public long toJsonString() throws IOException {
+        List<Map<String, Object>> rooms = new ArrayList<>();
+        for (InboxEntry r : page) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("id", r.getId());
+            m.put("name", r.getName());
+            m.put("type", r.getType().name());
+            m.put("unreadCount", r.getUnreadCount());
+            m.put("lastActivityAt", r.getLastActivityAt().toString());
+            if (r.getLastMessageId() != null) {
+                m.put("lastMessageId", String.valueOf(r.getLastMessageId()));
+                m.put("lastMessage", r.getLastMessage());
+                m.put("lastMessageAt", r.getLastActivityAt().toString());
+            }
+            rooms.add(m);
+        }
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("rooms", rooms);
+        payload.put("nextCursor", "AAABkZ4yT2AAAAPo");
+        res.setContentType("application/json");
+        res.setCharacterEncoding("UTF-8");
+        res.getWriter().write(gson.toJson(payload));
+        return wire;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
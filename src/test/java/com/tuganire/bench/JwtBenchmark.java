@@ -0,0 +1,124 @@
+package com.tuganire.bench;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.tuganire.filter.AuthFilter;
+import com.tuganire.util.EnvConfig;
+import com.tuganire.util.JwtUtil;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token verification per authenticated request (user-021). {@code verify} and {@code filter}
+ * run with the verified-token cache on (a user's repeated requests) and off (JWT_CACHE_MAX=0:
+ * every call runs the HMAC and decodes the claims). {@code rebuildEachTime} is the old
+ * JwtUtil.verify, which built the algorithm and verifier on every call.
+ *
+ * <p>{@code filter} is AuthFilter.doFilter on a protected path, with proxy request and response
+ * objects standing in for Tomcat's. Needs no database:
+ * {@code mvn -Pbench test -Dbench="Jwt -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JwtBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-0123456789";
+
+    private String token;
+
+    @State(Scope.Benchmark)
+    public static class TokenCache {
+        @Param({"on", "off"})
+        public String cache;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // before JwtUtil is loaded: it reads this once
+            System.setProperty("JWT_CACHE_MAX", cache.equals("on") ? "10000" : "0");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Request {
+        final Map<String, Object> attributes = new HashMap<>();
+        HttpServletRequest req;
+        HttpServletResponse res;
+        final FilterChain chain = (rq, rs) -> {
+        };
+        final AuthFilter filter = new AuthFilter();
+
+        @Setup(Level.Trial)
+        public void setUp(JwtBenchmark b) {
+            Cookie[] cookies = {new Cookie("JSESSIONID", "x"), new Cookie("token", b.token)};
+            req = proxy(HttpServletRequest.class, (p, m, a) -> switch (m.getName()) {
+                case "getRequestURI" -> "/app/chat";
+                case "getContextPath" -> "/app";
+                case "getCookies" -> cookies;
+                case "getHeader" -> null;
+                case "setAttribute" -> attributes.put((String) a[0], a[1]);
+                default -> throw new UnsupportedOperationException(m.getName());
+            });
+            res = proxy(HttpServletResponse.class, (p, m, a) -> {
+                throw new IllegalStateException("rejected: " + m.getName());
+            });
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("JWT_SECRET", SECRET);
+        // as JwtUtil.createToken signs it, without loading JwtUtil before TokenCache is set up
+        token = JWT.create()
+                .withClaim("userId", 42)
+                .withClaim("username", "alice")
+                .withExpiresAt(new Date(System.currentTimeMillis() + 3_600_000))
+                .sign(Algorithm.HMAC256(SECRET));
+    }
+
+    @Benchmark
+    public Object verify(TokenCache cache) {
+        return JwtUtil.verify(token);
+    }
+
+    @Benchmark
+    public Object filter(TokenCache cache, Request r) throws Exception {
+        r.filter.doFilter(r.req, r.res, r.chain);
+        return r.attributes.get("userId");
+    }
+
+    @Benchmark
+    public Object rebuildEachTime() {
+        DecodedJWT jwt = JWT.require(Algorithm.HMAC256(EnvConfig.getRequired("JWT_SECRET"))).build().verify(token);
+        return jwt.getClaim("userId").asInt() + jwt.getClaim("username").asString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
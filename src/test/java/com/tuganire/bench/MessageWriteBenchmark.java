@@ -0,0 +1,82 @@
+package com.tuganire.bench;
+
+import com.tuganire.model.Message;
+import com.tuganire.model.NewMessage;
+import com.tuganire.model.Room;
+import com.tuganire.model.User;
+import com.tuganire.service.MessageWriter;
+import com.tuganire.support.TestDatabase;
+import com.tuganire.util.HibernateUtil;
+import com.tuganire.util.SnowflakeId;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages/sec persisted with group commit (user-011) vs one transaction per message. Each JMH
+ * thread is a sender blocking until its message is committed, as ChatService.sendMessage does.
+ *
+ * <p>{@code perMessage} is the old MessageDAO.save path, adapted to the current schema: one session
+ * and one commit per message, persisting a Message with references to room and sender. The old
+ * path's four lookups beforehand are left out, which flatters it. {@code groupCommit} goes
+ * through MessageWriter.
+ *
+ * <p>Needs TEST_DB_URL. Vary the senders with JMH's {@code -t}, e.g.
+ * {@code mvn -Pbench test -Dbench="MessageWrite -t 1"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(32)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+public class MessageWriteBenchmark {
+
+    private SessionFactory sessionFactory;
+    private int roomId;
+    private int userId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TestDatabase.configure();
+        User user = TestDatabase.newUser();
+        Room room = TestDatabase.newRoom(user);
+        sessionFactory = HibernateUtil.getSessionFactory();
+        roomId = room.getId();
+        userId = user.getId();
+    }
+
+    @Benchmark
+    public Object perMessage() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            Message m = new Message(session.getReference(Room.class, roomId),
+                    session.getReference(User.class, userId), "hello");
+            m.setId(SnowflakeId.next());
+            session.persist(m);
+            session.getTransaction().commit();
+            return m;
+        }
+    }
+
+    @Benchmark
+    public Object groupCommit() {
+        long id = SnowflakeId.next();
+        return MessageWriter.submit(new NewMessage(id, roomId, userId, "hello", null, Instant.now())).join();
+    }
+}
@@ -0,0 +1,57 @@
+package com.tuganire.bench;
+
+import com.tuganire.util.TextSanitizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TextSanitizer.escapeHtml against the chained replaceAll it replaced, on a typical chat line
+ * with nothing to escape, one with a few quotes, and the worst case: a maximum-length message
+ * that is all markup. Run with {@code -prof gc} for the bytes allocated per call, e.g.
+ * {@code mvn -Pbench test -Dbench="TextSanitizer -prof gc"}. Needs no database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TextSanitizerBenchmark {
+
+    @Param({"plain", "quotes", "allMarkup"})
+    public String input;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = switch (input) {
+            case "plain" -> "are we still on for lunch tomorrow at noon, or should we move it to friday";
+            case "quotes" -> "she said \"don't wait for me\" so I didn't, it's fine <3";
+            case "allMarkup" -> "<'".repeat(5_000);
+            default -> throw new IllegalArgumentException(input);
+        };
+    }
+
+    @Benchmark
+    public String escapeHtml() {
+        return TextSanitizer.escapeHtml(text);
+    }
+
+    @Benchmark
+    public String replaceAll() {
+        return text.replaceAll("<", "&lt;").replaceAll(">", "&gt;")
+                .replaceAll("\"", "&quot;").replaceAll("'", "&#39;");
+    }
+}
@@ -0,0 +1,52 @@
+package com.tuganire.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocalClusterBusTest {
+
+    private final List<String> received = new ArrayList<>();
+
+    @Test
+    void deliversSubscribedChannelsBackToItself() {
+        LocalClusterBus bus = started();
+        bus.subscribe("room_1");
+        bus.publish("room_1", "a");
+        bus.publish("room_2", "b");
+        assertEquals(List.of("room_1:a"), received);
+    }
+
+    @Test
+    void stopsAfterUnsubscribeAndClose() {
+        LocalClusterBus bus = started();
+        bus.subscribe("room_1");
+        bus.subscribe("presence");
+        bus.unsubscribe("room_1");
+        bus.publish("room_1", "a");
+        bus.publish("presence", "b");
+        bus.close();
+        bus.publish("presence", "c");
+        assertEquals(List.of("presence:b"), received);
+    }
+
+    @Test
+    void instancesDoNotSeeEachOther() {
+        LocalClusterBus a = started();
+        LocalClusterBus b = new LocalClusterBus();
+        b.start((channel, payload) -> received.add("b:" + payload));
+        a.subscribe("room_1");
+        b.subscribe("room_1");
+        a.publish("room_1", "x");
+        assertEquals(List.of("room_1:x"), received);
+    }
+
+    private LocalClusterBus started() {
+        LocalClusterBus bus = new LocalClusterBus();
+        bus.start((channel, payload) -> received.add(channel + ":" + payload));
+        return bus;
+    }
+}
@@ -0,0 +1,96 @@
+package com.tuganire.cluster;
+
+import com.tuganire.support.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PostgresClusterBusTest {
+
+    private static final String CHANNEL = "bus_test";
+
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private final List<PostgresClusterBus> buses = new ArrayList<>();
+
+    @BeforeEach
+    void listen() throws InterruptedException {
+        TestDatabase.require();
+        PostgresClusterBus receiver = bus();
+        receiver.subscribe(CHANNEL);
+        receiver.start((channel, payload) -> received.add(payload));
+        // LISTEN runs on the bus thread: probe until it is in effect
+        PostgresClusterBus probe = bus();
+        probe.start((channel, payload) -> { });
+        String got = null;
+        for (int i = 0; i < 40 && !"probe".equals(got); i++) {
+            probe.publish(CHANNEL, "probe");
+            got = received.poll(250, TimeUnit.MILLISECONDS);
+        }
+        assertEquals("probe", got);
+        Thread.sleep(300);
+        received.clear();
+    }
+
+    @AfterEach
+    void close() {
+        buses.forEach(PostgresClusterBus::close);
+    }
+
+    @Test
+    void identicalEventsInOneBatchAreAllDelivered() throws InterruptedException {
+        PostgresClusterBus sender = bus();
+        String big = "x".repeat(20_000); // sent as chunks
+        for (int i = 0; i < 3; i++) {
+            sender.publish(CHANNEL, "n1|S|7|42");
+        }
+        sender.publish(CHANNEL, big);
+        sender.publish(CHANNEL, big);
+        sender.start((channel, payload) -> { }); // the queue is published as one batch
+
+        List<String> got = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String p = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(p, "only got " + got.size() + " events");
+            got.add(p);
+        }
+        assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+        assertEquals(3, got.stream().filter("n1|S|7|42"::equals).count());
+        assertEquals(2, got.stream().filter(big::equals).count());
+    }
+
+    @Test
+    void nodesOnlyReceiveChannelsTheySubscribeTo() throws InterruptedException {
+        PostgresClusterBus sender = bus();
+        sender.start((channel, payload) -> { });
+        sender.publish("bus_test_other", "not for us");
+        sender.publish(CHANNEL, "for us");
+        assertEquals("for us", received.poll(5, TimeUnit.SECONDS));
+        assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void unsubscribedNodeStopsReceiving() throws InterruptedException {
+        buses.get(0).unsubscribe(CHANNEL);
+        PostgresClusterBus sender = bus();
+        sender.start((channel, payload) -> { });
+        Thread.sleep(500); // UNLISTEN runs on the bus thread
+        sender.publish(CHANNEL, "late");
+        assertNull(received.poll(1, TimeUnit.SECONDS));
+    }
+
+    private PostgresClusterBus bus() {
+        PostgresClusterBus bus = new PostgresClusterBus(TestDatabase.url(), TestDatabase.username(), TestDatabase.password());
+        buses.add(bus);
+        return bus;
+    }
+}
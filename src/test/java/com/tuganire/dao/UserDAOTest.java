@@ -0,0 +1,73 @@
+package com.tuganire.dao;
+
+import com.tuganire.model.PresenceUpdate;
+import com.tuganire.model.Room;
+import com.tuganire.model.User;
+import com.tuganire.support.CountingDriver;
+import com.tuganire.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserDAOTest {
+
+    private UserDAO users;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.require();
+        users = new UserDAO();
+    }
+
+    @Test
+    void cachedLookupsIssueNoStatements() {
+        User alice = TestDatabase.newUser();
+        Room room = TestDatabase.newRoom(alice);
+        RoomDAO rooms = new RoomDAO();
+        users.findById(alice.getId());
+        users.findByUsername(alice.getUsername());
+        users.findByEmail(alice.getEmail());
+        rooms.findById(room.getId());
+
+        long before = CountingDriver.executions();
+        assertEquals(alice.getUsername(), users.findById(alice.getId()).orElseThrow().getUsername());
+        assertEquals(alice.getId(), users.findByUsername(alice.getUsername()).orElseThrow().getId());
+        assertEquals(alice.getId(), users.findByEmail(alice.getEmail()).orElseThrow().getId());
+        assertEquals(room.getName(), rooms.findById(room.getId()).orElseThrow().getName());
+        assertEquals(0, CountingDriver.executions() - before);
+    }
+
+    @Test
+    void writesAreSeenThroughTheCache() {
+        User alice = TestDatabase.newUser();
+        User cached = users.findById(alice.getId()).orElseThrow();
+        cached.setAvatar("https://example.test/a.png");
+        users.update(cached);
+        assertEquals("https://example.test/a.png", users.findById(alice.getId()).orElseThrow().getAvatar());
+
+        Instant seen = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        users.applyPresence(List.of(new PresenceUpdate(alice.getId(), true, seen)));
+        User reloaded = users.findByUsername(alice.getUsername()).orElseThrow();
+        assertTrue(reloaded.isOnline());
+        assertEquals(seen, reloaded.getLastSeen());
+    }
+
+    @Test
+    void aChangedEmailIsNotServedFromTheCache() {
+        User alice = TestDatabase.newUser();
+        String old = alice.getEmail();
+        users.findByEmail(old); // caches old -> alice
+
+        User cached = users.findById(alice.getId()).orElseThrow();
+        cached.setEmail("moved." + old);
+        users.update(cached);
+        assertTrue(users.findByEmail(old).isEmpty());
+        assertEquals(alice.getId(), users.findByEmail("moved." + old).orElseThrow().getId());
+    }
+}
@@ -0,0 +1,66 @@
+package com.tuganire.service;
+
+import com.tuganire.dao.UserDAO;
+import com.tuganire.model.User;
+import com.tuganire.support.TestDatabase;
+import com.tuganire.util.PasswordUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuthServiceTest {
+
+    private static final AtomicInteger SEQ = new AtomicInteger();
+
+    private AuthService auth;
+    private String name;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.require();
+        if (System.getProperty("JWT_SECRET") == null) {
+            System.setProperty("JWT_SECRET", "auth-service-test-secret");
+        }
+        auth = new AuthService();
+        name = "a" + ProcessHandle.current().pid() + "_" + SEQ.incrementAndGet();
+    }
+
+    @Test
+    void identifiersAreStoredAsTypedAndEmailsLowercased() {
+        String username = "o'" + name + "é";
+        User user = auth.register(" " + username + " ", "Mixed." + name + "@Test.Local", "secret").orElseThrow();
+        assertEquals(username, user.getUsername());
+        assertEquals("mixed." + name + "@test.local", user.getEmail());
+
+        assertTrue(auth.login(username, "secret").isPresent());
+        assertTrue(auth.login("MIXED." + name + "@test.local", "secret").isPresent());
+        assertTrue(auth.login(username, "wrong").isEmpty());
+        // the same email in another case is taken
+        assertTrue(auth.register(name + "x", "mixed." + name + "@TEST.local", "secret").isEmpty());
+    }
+
+    @Test
+    void usernameLengthIsCountedInCodePoints() {
+        String emoji = "\uD83D\uDE00"; // one code point, two chars
+        assertTrue(auth.register(emoji.repeat(2), name + "a@test.local", "secret").isEmpty());
+        assertTrue(auth.register(name + emoji.repeat(50 - name.length()), name + "b@test.local", "secret").isPresent());
+        assertTrue(auth.register(name + emoji.repeat(51 - name.length()), name + "c@test.local", "secret").isEmpty());
+    }
+
+    @Test
+    void accountsStoredEscapedCanStillLogIn() {
+        // as the original register() stored <b>o'NAME" and "Q"NAME@Test.Local: < > " escaped, lowercased
+        new UserDAO().save(new User("&lt;b&gt;o'" + name + "&quot;", "&quot;q&quot;" + name + "@test.local",
+                PasswordUtil.hash("secret")));
+
+        assertTrue(auth.login("<b>o'" + name + "\"", "secret").isPresent());
+        assertTrue(auth.login("\"Q\"" + name + "@Test.Local", "secret").isPresent());
+        // and both stay taken
+        assertTrue(auth.register("<b>o'" + name + "\"", name + "@test.local", "secret").isEmpty());
+        assertTrue(auth.register(name, "\"q\"" + name + "@test.local", "secret").isEmpty());
+    }
+}
@@ -0,0 +1,183 @@
+package com.tuganire.service;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.tuganire.model.EncodedHistoryPage;
+import com.tuganire.model.NewMessage;
+import com.tuganire.model.Room;
+import com.tuganire.model.User;
+import com.tuganire.support.CountingDriver;
+import com.tuganire.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatServiceTest {
+
+    private ChatService chat;
+    private User alice;
+    private User bob;
+    private Room room;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.require();
+        chat = new ChatService();
+        alice = TestDatabase.newUser();
+        bob = TestDatabase.newUser();
+        room = TestDatabase.newRoom(alice, bob);
+    }
+
+    @Test
+    void sendToACachedRoomIsOneStatement() {
+        send(alice, "warm up", null); // loads the room's membership
+        long before = CountingDriver.executions();
+        NewMessage m = send(alice, "hello", null).orElseThrow();
+        assertEquals(1, CountingDriver.executions() - before);
+        assertEquals("hello", m.content());
+    }
+
+    @Test
+    void replyToAnotherRoomIsDroppedByTheInsertItself() {
+        Room other = TestDatabase.newRoom(alice);
+        long elsewhere = send(alice, other, "elsewhere", null).orElseThrow().id();
+        long local = send(alice, "here", null).orElseThrow().id();
+        history(10, null); // fills RecentMessageCache
+
+        long before = CountingDriver.executions();
+        NewMessage dropped = send(bob, "reply elsewhere", elsewhere).orElseThrow();
+        long bad = dropped.id();
+        long good = send(bob, "reply here", local).orElseThrow().id();
+        assertEquals(2, CountingDriver.executions() - before);
+        assertNull(dropped.replyToId());
+
+        // the newest page comes from RecentMessageCache, an older one from the database: both agree
+        before = CountingDriver.executions();
+        List<JsonObject> cached = history(10, null);
+        assertEquals(0, CountingDriver.executions() - before);
+        List<JsonObject> stored = history(10, good + 1);
+        for (List<JsonObject> history : List.of(cached, stored)) {
+            assertNull(replyTo(history, bad));
+            assertEquals(local, replyTo(history, good));
+        }
+    }
+
+    @Test
+    void nonMemberIsRefusedWithoutAStatement() {
+        User carol = TestDatabase.newUser();
+        send(alice, "warm up", null);
+        long before = CountingDriver.executions();
+        assertTrue(send(carol, "let me in", null).isEmpty());
+        assertEquals(0, CountingDriver.executions() - before);
+    }
+
+    @Test
+    void historyPageIsOneStatementWhateverTheSenders() {
+        User carol = TestDatabase.newUser();
+        new RoomService().joinRoom(room.getId(), carol.getId());
+        User[] senders = {alice, bob, carol};
+        long previous = send(alice, "first", null).orElseThrow().id();
+        for (int i = 0; i < 60; i++) {
+            previous = send(senders[i % 3], "message " + i, i % 4 == 0 ? previous : null).orElseThrow().id();
+        }
+
+        long before = CountingDriver.executions();
+        List<JsonObject> older = history(20, previous);
+        assertEquals(1, CountingDriver.executions() - before);
+        assertEquals(20, older.size());
+        assertEquals(3, older.stream().map(m -> m.get("senderUsername").getAsString()).distinct().count());
+
+        before = CountingDriver.executions();
+        List<JsonObject> oldest = history(50, older.get(0).get("id").getAsLong());
+        assertEquals(1, CountingDriver.executions() - before);
+        assertEquals(40, oldest.size());
+        assertTrue(oldest.stream().anyMatch(m -> m.has("replyToId")));
+    }
+
+    @Test
+    void historyReadDuringASendNeverPairsTheNewTagWithTheOldPage() throws Exception {
+        send(alice, "warm up", null);
+        history(50, null); // fills RecentMessageCache, so reads race the append
+        long start = version(ContentVersions.historyTag(room.getId()));
+        int sends = 300;
+        long[] ids = new long[sends];
+        List<long[]> reads = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            Thread reader = new Thread(() -> {
+                while (!done.get()) {
+                    // as ChatServlet does: the tag first, then the page it will be sent with
+                    long tag = version(ContentVersions.historyTag(room.getId()));
+                    try (EncodedHistoryPage page = chat.loadHistoryJson(room.getId(), bob.getId(), 50, null, null)) {
+                        reads.add(new long[] {tag, page.lastId()});
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (int i = 0; i < sends; i++) {
+            ids[i] = send(alice, "message " + i, null).orElseThrow().id();
+        }
+        done.set(true);
+        for (Thread t : readers) {
+            t.join();
+        }
+
+        // the k-th send bumps the tag to start + k, so a page read under that tag must hold it
+        assertTrue(reads.size() > sends);
+        for (long[] read : reads) {
+            int k = (int) (read[0] - start);
+            if (k > 0) {
+                assertTrue(read[1] >= ids[k - 1], "page under tag " + read[0] + " misses message " + k);
+            }
+        }
+    }
+
+    private static long version(String tag) {
+        return Long.parseLong(tag.substring(tag.lastIndexOf('-') + 1, tag.length() - 1));
+    }
+
+    private Optional<NewMessage> send(User sender, String content, Long replyTo) {
+        return send(sender, room, content, replyTo);
+    }
+
+    private Optional<NewMessage> send(User sender, Room to, String content, Long replyTo) {
+        return chat.sendMessage(to.getId(), sender.getId(), sender.getUsername(), content, replyTo);
+    }
+
+    /** A page of the room as bob reads it, parsed the way GET /messages sends it. */
+    private List<JsonObject> history(int limit, Long beforeId) {
+        try (EncodedHistoryPage page = chat.loadHistoryJson(room.getId(), bob.getId(), limit, beforeId, null)) {
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            json.write('[');
+            page.writeTo(json);
+            json.write(']');
+            List<JsonObject> messages = new ArrayList<>();
+            JsonParser.parseString(json.toString(StandardCharsets.UTF_8)).getAsJsonArray()
+                    .forEach(m -> messages.add(m.getAsJsonObject()));
+            return messages;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Long replyTo(List<JsonObject> history, long id) {
+        JsonObject m = history.stream().filter(o -> o.get("id").getAsLong() == id).findFirst().orElseThrow();
+        return m.has("replyToId") ? m.get("replyToId").getAsLong() : null;
+    }
+}
@@ -0,0 +1,60 @@
+package com.tuganire.service;
+
+import com.tuganire.model.Room;
+import com.tuganire.model.User;
+import com.tuganire.support.CountingDriver;
+import com.tuganire.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MembershipIndexTest {
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.require();
+    }
+
+    @Test
+    void largeIdsDoNotSizeTheIndex() {
+        int roomId = Integer.MAX_VALUE - 1; // would need a 2^31 slot array if indexed by id
+        assertEquals(0, MembershipIndex.membersOf(roomId).length);
+        assertFalse(MembershipIndex.isMember(roomId, 1));
+    }
+
+    @Test
+    void emptyResultsAreCached() {
+        User loner = TestDatabase.newUser();
+        assertEquals(0, MembershipIndex.roomsOf(loner.getId()).length);
+        long before = CountingDriver.executions();
+        assertEquals(0, MembershipIndex.roomsOf(loner.getId()).length);
+        assertEquals(0, CountingDriver.executions() - before);
+    }
+
+    @Test
+    void cachedEmptyEntryFollowsLaterJoins() {
+        User alice = TestDatabase.newUser();
+        assertEquals(0, MembershipIndex.roomsOf(alice.getId()).length); // cached empty
+        Room room = TestDatabase.newRoom(alice);
+        assertArrayEquals(new int[]{room.getId()}, MembershipIndex.roomsOf(alice.getId()));
+
+        User bob = TestDatabase.newUser();
+        new RoomService().joinRoom(room.getId(), bob.getId());
+        long before = CountingDriver.executions();
+        int[] members = MembershipIndex.membersOf(room.getId());
+        Arrays.sort(members);
+        assertArrayEquals(new int[]{alice.getId(), bob.getId()}, members);
+        assertTrue(MembershipIndex.isMember(room.getId(), bob.getId()));
+        assertEquals(0, CountingDriver.executions() - before);
+
+        new RoomService().leaveRoom(room.getId(), bob.getId());
+        assertFalse(MembershipIndex.isMember(room.getId(), bob.getId()));
+        assertEquals(0, MembershipIndex.roomsOf(bob.getId()).length);
+    }
+}
@@ -0,0 +1,50 @@
+package com.tuganire.service;
+
+import com.tuganire.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PresenceServiceTest {
+
+    @BeforeEach
+    void database() {
+        TestDatabase.require(); // the write-behind flush needs a SessionFactory
+        PresenceService.expireSilentNodes(-1); // forget nodes left by other tests
+    }
+
+    @Test
+    void usersOfASilentNodeGoOffline() throws InterruptedException {
+        PresenceService.remote(900_001, "alice", "dead-1", true);
+        PresenceService.remote(900_002, "bob", "dead-1", true);
+        PresenceService.remote(900_002, "bob", "alive-1", true); // also on a live node
+        PresenceService.remote(900_003, "carol", "dead-1", true);
+        PresenceService.connect(900_003); // and connected here
+        Thread.sleep(300);
+        PresenceService.heartbeat("alive-1");
+
+        Map<Integer, String> offline = PresenceService.expireSilentNodes(200);
+
+        assertEquals(Map.of(900_001, "alice"), offline);
+        assertFalse(PresenceService.isOnline(900_001));
+        assertTrue(PresenceService.isOnline(900_002));
+        assertTrue(PresenceService.isOnline(900_003));
+        assertEquals(Map.of(), PresenceService.expireSilentNodes(200));
+    }
+
+    @Test
+    void heartbeatsKeepANodesUsersOnline() throws InterruptedException {
+        PresenceService.remote(900_011, "dave", "alive-2", true);
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(150);
+            PresenceService.heartbeat("alive-2");
+            assertEquals(Map.of(), PresenceService.expireSilentNodes(400));
+        }
+        assertTrue(PresenceService.isOnline(900_011));
+    }
+}
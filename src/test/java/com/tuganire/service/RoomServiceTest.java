@@ -0,0 +1,62 @@
+package com.tuganire.service;
+
+import com.tuganire.model.InboxEntry;
+import com.tuganire.model.InboxPage;
+import com.tuganire.model.Room;
+import com.tuganire.model.User;
+import com.tuganire.support.CountingDriver;
+import com.tuganire.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomServiceTest {
+
+    private RoomService rooms;
+    private ChatService chat;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.require();
+        rooms = new RoomService();
+        chat = new ChatService();
+    }
+
+    @Test
+    void inboxPageIsOneStatementWhateverTheRoomCount() {
+        User alice = TestDatabase.newUser();
+        User bob = TestDatabase.newUser();
+        List<Room> joined = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Room room = TestDatabase.newRoom(i % 2 == 0 ? alice : bob, i % 2 == 0 ? bob : alice);
+            joined.add(room);
+            chat.sendMessage(room.getId(), bob.getId(), bob.getUsername(), "hi " + i, null);
+        }
+        rooms.inbox(alice.getId(), 5, null); // warm-up
+
+        long before = CountingDriver.executions();
+        InboxPage first = rooms.inbox(alice.getId(), 5, null);
+        assertEquals(1, CountingDriver.executions() - before);
+        assertEquals(5, first.rooms().size());
+        assertTrue(first.hasMore());
+
+        before = CountingDriver.executions();
+        InboxEntry last = first.rooms().get(first.rooms().size() - 1);
+        InboxPage rest = rooms.inbox(alice.getId(), 50, last);
+        assertEquals(1, CountingDriver.executions() - before);
+        assertEquals(7, rest.rooms().size());
+        assertFalse(rest.hasMore());
+
+        // most recent activity first, with the last message and unread count of each room
+        InboxEntry newest = first.rooms().get(0);
+        assertEquals(joined.get(11).getId(), newest.getId());
+        assertEquals("hi 11", newest.getLastMessage());
+        assertEquals(1, newest.getUnreadCount());
+    }
+}
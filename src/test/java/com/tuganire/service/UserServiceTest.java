@@ -0,0 +1,45 @@
+package com.tuganire.service;
+
+import com.tuganire.dao.UserDAO;
+import com.tuganire.model.User;
+import com.tuganire.support.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserServiceTest {
+
+    private UserService users;
+
+    @BeforeEach
+    void setUp() {
+        TestDatabase.require();
+        users = new UserService();
+    }
+
+    @Test
+    void avatarUrlsAreStoredAsGivenOrRejected() {
+        User alice = TestDatabase.newUser();
+        String url = "https://cdn.example.com/a/it's.png?size=64&v=2";
+
+        assertTrue(users.updateAvatar(alice.getId(), "  " + url + " "));
+        assertEquals(url, avatar(alice));
+
+        assertFalse(users.updateAvatar(alice.getId(), "javascript:alert(1)"));
+        assertFalse(users.updateAvatar(alice.getId(), "https://example.com/\"><script>"));
+        assertFalse(users.updateAvatar(alice.getId(), "/relative.png"));
+        assertFalse(users.updateAvatar(alice.getId(), "https://example.com/" + "a".repeat(500)));
+        assertEquals(url, avatar(alice));
+
+        assertTrue(users.updateAvatar(alice.getId(), " "));
+        assertNull(avatar(alice));
+    }
+
+    private static String avatar(User user) {
+        return new UserDAO().findById(user.getId()).orElseThrow().getAvatar();
+    }
+}
@@ -0,0 +1,125 @@
+package com.tuganire.support;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * JDBC driver for {@code jdbc:counting:<url>} that opens {@code jdbc:<url>} and counts every
+ * statement execution (one execute / executeQuery / executeUpdate / executeBatch is one round
+ * trip), whether it comes from Hibernate or from raw JDBC inside {@code doWork}.
+ */
+public final class CountingDriver implements Driver {
+
+    public static final String PREFIX = "jdbc:counting:";
+
+    private static final LongAdder EXECUTIONS = new LongAdder();
+
+    static {
+        try {
+            DriverManager.registerDriver(new CountingDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** Statements executed through this driver so far, by any thread. */
+    public static long executions() {
+        return EXECUTIONS.sum();
+    }
+
+    static void register() {
+        // static initializer does the work
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        Connection conn = DriverManager.getConnection("jdbc:" + url.substring(PREFIX.length()), info);
+        return proxy(Connection.class, conn, (p, m, args) -> {
+            Object result = invoke(conn, m, args);
+            if (result instanceof CallableStatement cs) {
+                return counting(CallableStatement.class, cs);
+            }
+            if (result instanceof PreparedStatement ps) {
+                return counting(PreparedStatement.class, ps);
+            }
+            if (result instanceof Statement st) {
+                return counting(Statement.class, st);
+            }
+            return result;
+        });
+    }
+
+    private static <T extends Statement> T counting(Class<T> type, T target) {
+        return proxy(type, target, (p, m, args) -> {
+            if (m.getName().startsWith("execute")) {
+                EXECUTIONS.increment();
+            }
+            return invoke(target, m, args);
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(CountingDriver.class.getClassLoader(), new Class<?>[]{type},
+                (p, m, args) -> {
+                    if (m.getName().equals("unwrap") || m.getName().equals("isWrapperFor")) {
+                        return invoke(target, m, args);
+                    }
+                    return handler.invoke(p, m, args);
+                }));
+    }
+
+    private static Object invoke(Object target, Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
@@ -0,0 +1,94 @@
+package com.tuganire.support;
+
+import com.tuganire.dao.UserDAO;
+import com.tuganire.model.Room;
+import com.tuganire.model.User;
+import com.tuganire.service.RoomService;
+import org.junit.jupiter.api.Assumptions;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Disposable PostgreSQL database for tests and benchmarks. Set TEST_DB_URL (and TEST_DB_USERNAME /
+ * TEST_DB_PASSWORD, default postgres / postgres); tests that need a database are skipped without it.
+ *
+ * <p>The schema is dropped and recreated when the SessionFactory is first built in a JVM, so never
+ * point TEST_DB_URL at a database you want to keep. Statements go through {@link CountingDriver}.
+ */
+public final class TestDatabase {
+
+    /** Any 60-char string fits users.password_hash; tests never log in with it. */
+    private static final String PASSWORD_HASH = "$2a$10$" + "x".repeat(53);
+    private static final AtomicInteger SEQ = new AtomicInteger();
+
+    private static boolean configured;
+
+    private TestDatabase() {
+    }
+
+    /**
+     * Point the application at the test database, or skip the calling test if none is configured.
+     */
+    public static void require() {
+        Assumptions.assumeTrue(url() != null, "TEST_DB_URL is not set");
+        configure();
+    }
+
+    /**
+     * Point the application at the test database. Must run before anything touches HibernateUtil.
+     */
+    public static synchronized void configure() {
+        if (configured) {
+            return;
+        }
+        String url = url();
+        if (url == null) {
+            throw new IllegalStateException("Set TEST_DB_URL to a disposable PostgreSQL database");
+        }
+        CountingDriver.register();
+        System.setProperty("DB_URL", CountingDriver.PREFIX + url.substring("jdbc:".length()));
+        System.setProperty("DB_DRIVER", CountingDriver.class.getName());
+        System.setProperty("DB_USERNAME", setting("TEST_DB_USERNAME", "postgres"));
+        System.setProperty("DB_PASSWORD", setting("TEST_DB_PASSWORD", "postgres"));
+        System.setProperty("HIBERNATE_HBM2DDL_AUTO", "create");
+        configured = true;
+    }
+
+    /** JDBC URL of the test database itself (without statement counting), or null. */
+    public static String url() {
+        String url = setting("TEST_DB_URL", null);
+        return url != null && !url.isBlank() ? url : null;
+    }
+
+    public static String username() {
+        return setting("TEST_DB_USERNAME", "postgres");
+    }
+
+    public static String password() {
+        return setting("TEST_DB_PASSWORD", "postgres");
+    }
+
+    /** A new user with a unique name. */
+    public static User newUser() {
+        String name = "u" + ProcessHandle.current().pid() + "_" + SEQ.incrementAndGet();
+        return new UserDAO().save(new User(name, name + "@test.local", PASSWORD_HASH));
+    }
+
+    /** A new group room created by the first user, with the others joined. */
+    public static Room newRoom(User creator, User... members) {
+        RoomService rooms = new RoomService();
+        Room room = rooms.createGroupRoom("room " + SEQ.incrementAndGet(), creator.getId()).orElseThrow();
+        for (User m : members) {
+            rooms.joinRoom(room.getId(), m.getId());
+        }
+        return room;
+    }
+
+    private static String setting(String key, String defaultValue) {
+        String v = System.getProperty(key);
+        if (v == null) {
+            v = System.getenv(key);
+        }
+        return v != null ? v : defaultValue;
+    }
+}
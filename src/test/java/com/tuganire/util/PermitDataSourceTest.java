@@ -0,0 +1,67 @@
+package com.tuganire.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PermitDataSourceTest {
+
+    private final Semaphore permits = new Semaphore(1, true);
+    private final AtomicInteger closes = new AtomicInteger();
+    private final AtomicBoolean failing = new AtomicBoolean();
+
+    @Test
+    void aConnectionHoldsItsPermitUntilClosed() throws SQLException {
+        DataSource ds = new PermitDataSource(pool(), permits, new AtomicInteger(), 50);
+        Connection first = ds.getConnection();
+        assertEquals(0, permits.availablePermits());
+        assertThrows(SQLTimeoutException.class, ds::getConnection);
+
+        first.close();
+        first.close(); // a second close must not hand out a second permit
+        assertEquals(1, permits.availablePermits());
+        assertEquals(2, closes.get());
+        assertFalse(first.isClosed()); // everything else goes to the pooled connection
+
+        ds.getConnection().close();
+        assertEquals(1, permits.availablePermits());
+    }
+
+    @Test
+    void aFailedCheckoutGivesThePermitBack() {
+        DataSource ds = new PermitDataSource(pool(), permits, new AtomicInteger(), 50);
+        failing.set(true);
+        assertThrows(SQLException.class, ds::getConnection);
+        assertTrue(permits.tryAcquire());
+    }
+
+    /** Stands in for Hikari: connections that only count their closes. */
+    private DataSource pool() {
+        Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        closes.incrementAndGet();
+                    }
+                    return method.getReturnType() == boolean.class ? false : null;
+                });
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+                    if (failing.get()) {
+                        throw new SQLException("pool exhausted");
+                    }
+                    return connection;
+                });
+    }
+}
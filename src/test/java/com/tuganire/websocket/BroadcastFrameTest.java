@@ -0,0 +1,33 @@
+package com.tuganire.websocket;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BroadcastFrameTest {
+
+    @Test
+    void everyRecipientGetsItsOwnViewOfTheSameBytes() {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("content", "héllo 😀");
+        BroadcastFrame frame = BroadcastFrame.durable(payload);
+        byte[] expected = payload.toString().getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, frame.byteLength());
+
+        ByteBuffer first = frame.payload();
+        ByteBuffer second = frame.payload();
+        byte[] sent = new byte[first.remaining()];
+        first.get(sent); // as the container consumes it
+        assertEquals(payload.toString(), new String(sent, StandardCharsets.UTF_8));
+        assertEquals(expected.length, second.remaining());
+        assertTrue(second.isReadOnly());
+        assertThrows(ReadOnlyBufferException.class, () -> second.put(0, (byte) 0));
+    }
+}